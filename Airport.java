@@ -1,355 +1,1433 @@
-import java.util.*;
-import java.util.stream.Collectors;
-
-public class Airport extends AirportBase {
-
-    private HashMap<TerminalBase, LinkedList<ShuttleBase>> adjList;
-    private HashMap<TerminalBase, Integer> indexes;
-    private int index;
-    private HashMap<TerminalBase, Integer> distances;
-    private HashSet<TerminalBase> visited;
-    private ArrayList<TerminalBase> inPath;
-    private PriorityQueue<Node> pq;
-
-    /**
-     * Creates a new AirportBase instance with the given capacity.
-     *
-     * @param capacity capacity of the airport shuttles
-     *                 (same for all shuttles)
-     */
-    public Airport(int capacity) {
-        super(capacity);
-
-        adjList = new HashMap<>();
-        index = 0;
-        indexes = new HashMap<>();
-        pq = new PriorityQueue<>(new Node());
-    }
-
-    @Override
-    public TerminalBase opposite(ShuttleBase shuttle, TerminalBase terminal) {
-        if (shuttle.getOrigin().getId().equals(terminal.getId()))
-            return shuttle.getDestination();
-        if (shuttle.getDestination().getId().equals(terminal.getId()))
-            return shuttle.getOrigin();
-
-        return null;
-    }
-
-    @Override
-    public TerminalBase insertTerminal(TerminalBase terminal) {
-        LinkedList<ShuttleBase> list = new LinkedList<>();
-        adjList.put(terminal, list);
-        indexes.put(terminal, index++);
-        return terminal;
-    }
-
-    @Override
-    public ShuttleBase insertShuttle(TerminalBase origin, TerminalBase destination, int time) {
-        ShuttleBase shuttle = new Shuttle(origin, destination, time);
-        LinkedList<ShuttleBase> list;
-        list = adjList.get(origin);
-        list.addFirst(shuttle);
-        adjList.put(origin, list);
-        list = adjList.get(destination);
-        list.addFirst(shuttle);
-        adjList.put(destination, list);
-        return shuttle;
-    }
-
-    @Override
-    public boolean removeTerminal(TerminalBase terminal) {
-        if (indexes.get(terminal) == null)
-            return false;
-
-        List<ShuttleBase> toRemove = new ArrayList<>();
-        for (TerminalBase term : adjList.keySet()) {
-            for (ShuttleBase shuttle : adjList.get(term))
-                if (shuttle.getOrigin() == terminal)
-                    toRemove.add(shuttle);
-                else if (shuttle.getDestination() == terminal)
-                    toRemove.add(shuttle);
-            adjList.get(term).removeAll(toRemove);
-        }
-        adjList.remove(terminal);
-        indexes.remove(terminal);
-        index--;
-
-        return true;
-    }
-
-    @Override
-    public boolean removeShuttle(ShuttleBase shuttle) {
-        List<ShuttleBase> toRemove = new ArrayList<>();
-        for (TerminalBase term : adjList.keySet()) {
-            for (ShuttleBase sh : adjList.get(term))
-                if (sh == shuttle)
-                    toRemove.add(sh);
-            adjList.get(term).removeAll(toRemove);
-        }
-        return true;
-    }
-
-    @Override
-    public List<ShuttleBase> outgoingShuttles(TerminalBase terminal) {
-        return this.adjList.get(terminal);
-    }
-
-    @Override
-    public Path findShortestPath(TerminalBase origin, TerminalBase destination) {
-        distances = new HashMap<>();
-        visited = new HashSet<>();
-        inPath = new ArrayList<>();
-        Queue<TerminalBase> queue = new ArrayDeque<>();
-
-        for (TerminalBase term : adjList.keySet())
-            distances.put(term, Integer.MAX_VALUE);
-
-        distances.replace(origin, 0);
-        queue.add(origin);
-
-        while (queue.size() != 0) {
-            TerminalBase vertex = queue.poll();
-            if (!visited.contains(vertex)) {
-                inPath.add(vertex);
-                if (vertex.equals(destination))
-                    break;
-                queue.addAll(getNeighbours(vertex));
-                visited.add(vertex);
-            }
-        }
-
-        return new Path(inPath, distances.get(destination));
-    }
-
-    /**
-     * Helper function to get all adjacent terminals to the given terminal,
-     * i.e. has an adjoining shuttle.
-     *
-     * @param vertex terminal of which neighbours are to be found
-     * @return list of adjacent terminals
-     */
-    private List<TerminalBase> getNeighbours(TerminalBase vertex) {
-        List<TerminalBase> neighbours = new ArrayList<>();
-        for (ShuttleBase shuttle : adjList.get(vertex)) {
-            if (shuttle.getOrigin().equals(vertex)) {
-                if (!neighbours.contains(shuttle.getDestination())) {
-                    neighbours.add(shuttle.getDestination());
-                    distances.replace(shuttle.getDestination(), shuttle.getTime() + shuttle.getOrigin().getWaitingTime());
-                }
-            } else {
-                if (!neighbours.contains(shuttle.getOrigin())) {
-                    neighbours.add(shuttle.getOrigin());
-                    distances.replace(shuttle.getOrigin(), shuttle.getTime() + shuttle.getDestination().getWaitingTime());
-                }
-            }
-        }
-        return neighbours;
-    }
-
-    @Override
-    public Path findFastestPath(TerminalBase origin, TerminalBase destination) {
-        distances = new HashMap<>();
-        visited = new HashSet<>();
-        inPath = new ArrayList<>();
-
-        for (TerminalBase term : adjList.keySet()) {
-            distances.put(term, Integer.MAX_VALUE);
-        }
-
-        pq.add(new Node(origin, 0));
-        distances.replace(origin, 0);
-
-        while (visited.size() != index) {
-            if (pq.isEmpty())
-                return null;
-
-            TerminalBase term = pq.remove().terminal;
-
-            if (visited.contains(term))
-                continue;
-
-            visited.add(term);
-            processNeighboursFastest(term);
-        }
-        inPath.add(destination);
-
-        return new Path(inPath, distances.get(destination));
-    }
-
-    /**
-     * Helper function to visit all adjacent terminals to the given terminal
-     * and compare the path distances between them.
-     *
-     * @param term terminal of which its neighbours are to be processed
-     */
-    private void processNeighboursFastest(TerminalBase term) {
-        int edgeDist;
-        int newDist;
-
-        for (ShuttleBase shuttle : outgoingShuttles(term)) {
-            Node neighbour;
-            if (shuttle.getOrigin().equals(term))
-                neighbour = new Node(shuttle.getDestination(), shuttle.getTime() + shuttle.getOrigin().getWaitingTime());
-            else
-                neighbour = new Node(shuttle.getOrigin(), shuttle.getTime() + shuttle.getDestination().getWaitingTime());
-
-            if (!visited.contains(neighbour.terminal)) {
-                edgeDist = neighbour.cost;
-                newDist = distances.get(term) + edgeDist;
-
-                if (newDist < distances.get(neighbour.terminal)) {
-                    distances.replace(neighbour.terminal, newDist);
-                    inPath.remove(term);
-                    inPath.add(term);
-                }
-
-                pq.add(new Node(neighbour.terminal,
-                                distances.get(neighbour.terminal)));
-            }
-        }
-    }
-    
-    static class Terminal extends TerminalBase {
-
-        /**
-         * Creates a new TerminalBase instance with the given terminal ID
-         * and waiting time.
-         *
-         * @param id          terminal ID
-         * @param waitingTime waiting time for the terminal, in minutes
-         */
-        public Terminal(String id, int waitingTime) {
-            super(id, waitingTime);
-        }
-    }
-
-    static class Shuttle extends ShuttleBase {
-        /**
-         * Creates a new ShuttleBase instance, travelling from origin to
-         * destination and requiring 'time' minutes to travel.
-         *
-         * @param origin      origin terminal
-         * @param destination destination terminal
-         * @param time        time required to travel, in minutes
-         */
-        public Shuttle(TerminalBase origin, TerminalBase destination, int time) {
-            super(origin, destination, time);
-        }
-    }
-
-    public static void main(String[] args) {
-        Airport a = new Airport(3);
-        Terminal terminalA = (Terminal) a.insertTerminal(new Terminal("A", 1));
-        Terminal terminalB = (Terminal) a.insertTerminal(new Terminal("B", 3));
-        Terminal terminalC = (Terminal) a.insertTerminal(new Terminal("C", 4));
-        Terminal terminalD = (Terminal) a.insertTerminal(new Terminal("D", 2));
-
-        Shuttle shuttle1 = (Shuttle) a.insertShuttle(terminalA, terminalB, 2);
-        Shuttle shuttle2 = (Shuttle) a.insertShuttle(terminalA, terminalC, 5);
-        Shuttle shuttle3 = (Shuttle) a.insertShuttle(terminalA, terminalD, 18);
-        Shuttle shuttle4 = (Shuttle) a.insertShuttle(terminalB, terminalD, 8);
-        Shuttle shuttle5 = (Shuttle) a.insertShuttle(terminalC, terminalD, 15);
-
-        // Opposite
-        assert a.opposite(shuttle1, terminalA).getId().equals("B");
-
-        // Outgoing Shuttles
-        assert a.outgoingShuttles(terminalA).stream()
-                .map(ShuttleBase::getTime)
-                .collect(Collectors.toList()).containsAll(List.of(2, 5, 18));
-
-
-        // Remove Terminal
-        //        Terminal terminalTest = new Terminal("E", 12);
-        //        System.out.println(a.removeTerminal(terminalTest));
-        a.removeTerminal(terminalC);
-        assert a.outgoingShuttles(terminalA).stream()
-                .map(ShuttleBase::getTime)
-                .collect(Collectors.toList()).containsAll(List.of(2, 18));
-
-        // Shortest path
-        Path shortestPath = a.findShortestPath(terminalA, terminalD);
-        System.out.println(shortestPath.terminals);
-        System.out.println(shortestPath.time);
-        assert shortestPath.terminals.stream()
-                .map(TerminalBase::getId)
-                .collect(Collectors.toList()).equals(List.of("A", "D"));
-        assert shortestPath.time == 19;
-
-        // Fastest path
-        Path fastestPath = a.findFastestPath(terminalA, terminalD);
-        System.out.println(fastestPath.terminals);
-        System.out.println(fastestPath.time);
-
-        assert fastestPath.terminals.stream()
-                .map(TerminalBase::getId)
-                .collect(Collectors.toList()).equals(List.of("A", "B", "D"));
-
-
-        assert fastestPath.time == 14;
-
-        Airport b = new Airport(6);
-        Terminal A = (Terminal) b.insertTerminal(new Terminal("A_", 1));
-        Terminal B = (Terminal) b.insertTerminal(new Terminal("B_", 2));
-        Terminal C = (Terminal) b.insertTerminal(new Terminal("C_", 4));
-        Terminal D = (Terminal) b.insertTerminal(new Terminal("D_", 2));
-
-        Shuttle s1 = (Shuttle) b.insertShuttle(A, B, 3);
-        Shuttle s2 = (Shuttle) b.insertShuttle(A, D, 1);
-        Shuttle s3 = (Shuttle) b.insertShuttle(A, C, 3);
-        Shuttle s4 = (Shuttle) b.insertShuttle(B, D, 4);
-        Shuttle s5 = (Shuttle) b.insertShuttle(C, D, 2);
-
-        Path path = b.findFastestPath(B, C);
-        System.out.println(path.terminals);
-        assert path.terminals.stream()
-                .map(TerminalBase::getId)
-                .collect(Collectors.toList()).equals(List.of("B_", "A_", "C_"));
-        System.out.println(path.time);
-        assert path.time == 9;
-
-        Airport c = new Airport(6);
-        Terminal Ac = (Terminal) c.insertTerminal(new Terminal("A_c", 1));
-        Terminal Bc = (Terminal) c.insertTerminal(new Terminal("B_c", 10));
-        Terminal Cc = (Terminal) c.insertTerminal(new Terminal("C_c", 2));
-        Terminal Dc = (Terminal) c.insertTerminal(new Terminal("D_c", 2));
-
-        Shuttle s4_c = (Shuttle) c.insertShuttle(Ac, Cc, 10);
-        Shuttle s1_c = (Shuttle) c.insertShuttle(Ac, Bc, 2);
-        Shuttle s2_c = (Shuttle) c.insertShuttle(Bc, Dc, 8);
-        Shuttle s3_c = (Shuttle) c.insertShuttle(Cc, Dc, 8);
-
-        Path pathC = c.findFastestPath(Ac, Dc);
-        System.out.println(pathC.terminals);
-    }
-}
-
-class Node implements Comparator<Node> {
-
-    AirportBase.TerminalBase terminal;
-    int cost;
-
-    /**
-     * Creates a new Node instance.
-     */
-    public Node() {}
-
-    /**
-     * Creates a new Node instance with the given terminal and associated
-     * terminal cost.
-     *
-     * @param terminal airport terminal
-     * @param cost cost of terminal (terminal waiting time + outgoing shuttle
-     *             travel time)
-     */
-    public Node(AirportBase.TerminalBase terminal, int cost) {
-        this.terminal = terminal;
-        this.cost = cost;
-    }
-
-    @Override
-    public int compare(Node n1, Node n2) {
-        return Integer.compare(n1.cost, n2.cost);
-    }
-}
\ No newline at end of file
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class Airport extends AirportBase {
+
+    /**
+     * Search strategies used by findShortestPath and findFastestPath.
+     */
+    enum RoutingMode {
+        /* Single search growing forward from the origin */
+        FORWARD,
+        /* Searches from both the origin and the destination that meet */
+        BIDIRECTIONAL,
+        /* A* towards the destination guided by landmark lower bounds */
+        LANDMARKS,
+        /* Upward search in a contraction hierarchy of the network */
+        CONTRACTION,
+        /* Next-hop walk through a precomputed all-pairs route table */
+        TABLE,
+        /* Search over the boundary overlay of a partitioned network */
+        OVERLAY
+    }
+
+    /*
+     * Mutations hold the write lock of 'lock' while they change adjList.
+     * Queries never lock: they run on the immutable snapshot in 'graph'
+     * and on indexes derived from it. The snapshot is built under the read
+     * lock; it and the indexes are published through volatile fields.
+     */
+    private final StampedLock lock = new StampedLock();
+    /*
+     * Each derived structure is built under its own monitor, so that a long
+     * build of one never holds up queries that need only the others
+     */
+    private final Object snapshotLock = new Object();
+    private final Object landmarksLock = new Object();
+    private final Object hierarchyLock = new Object();
+    private final Object routeTableLock = new Object();
+    private final Object overlayLock = new Object();
+    private final Object timetableLock = new Object();
+    private final Object centralityLock = new Object();
+
+    private LinkedHashMap<TerminalBase, ArrayList<ShuttleBase>> adjList;
+    /* Incremented by every mutation of the network */
+    private volatile long version;
+    /* Incremented by every change of a departure schedule */
+    private volatile long scheduleVersion;
+    /* CSR snapshot used by the path queries, or null until first needed */
+    private volatile AirportGraph graph;
+    private volatile RoutingMode routingMode = RoutingMode.FORWARD;
+    /* Landmark tables for LANDMARKS mode, or null until first needed */
+    private volatile LandmarkIndex landmarks;
+    private int landmarkCount = 8;
+    private LandmarkIndex.Selection landmarkSelection =
+            LandmarkIndex.Selection.FARTHEST;
+    /* Contraction hierarchy for CONTRACTION mode, or null until needed */
+    private volatile ContractionHierarchy hierarchy;
+    /* All-pairs routes for TABLE mode, or null until first needed */
+    private volatile RouteTable routeTable;
+    /* Cell key of each terminal for OVERLAY mode, or null if unset */
+    private volatile Function<? super TerminalBase, ?> partition;
+    /* Boundary overlay of the partitioned network, or null until needed */
+    private volatile OverlayIndex overlay;
+    /* Departure-sorted connections of the schedules, or null until needed */
+    private volatile Timetable timetable;
+    /* Hub measures of the latest snapshot analysed, or null */
+    private volatile Centrality centrality;
+    /* LRU cache in front of the path queries, or null if disabled */
+    private volatile PathCache pathCache;
+    /* Query counters and latencies, or null if instrumentation is off */
+    private volatile SearchStats searchStats;
+    /* Incrementally maintained hub trees, or null if no hubs are set */
+    private HubTrees hubTrees;
+    /* Components of the network, for rejecting unreachable pairs */
+    private final ConnectivityIndex connectivity = new ConnectivityIndex();
+    /* Recent mutations, for subscribers catching up on changes */
+    private volatile ChangeLog changeLog = new ChangeLog(4096, 0);
+    /*
+     * Shuttles created by applyChanges, keyed by the shuttles of the airport
+     * the changes came from, or null if no changes were applied
+     */
+    private IdentityHashMap<ShuttleBase, ShuttleBase> replayed;
+    /*
+     * Snapshot file this airport was loaded from while its shuttle objects
+     * and adjList have not been created yet, or null
+     */
+    private volatile SnapshotFile packed;
+
+    /**
+     * Creates a new AirportBase instance with the given capacity.
+     *
+     * @param capacity capacity of the airport shuttles
+     *                 (same for all shuttles)
+     */
+    public Airport(int capacity) {
+        super(capacity);
+
+        adjList = new LinkedHashMap<>();
+    }
+
+    /**
+     * Loads an airport from a file written by writeSnapshot. The file is
+     * memory-mapped and its arrays become the routing snapshot directly;
+     * shuttle objects are only created once the airport is changed or its
+     * shuttles are asked for.
+     *
+     * @param file snapshot file
+     * @return the loaded airport
+     * @throws IOException if the file cannot be read or is not a valid
+     * snapshot
+     */
+    public static Airport loadSnapshot(java.nio.file.Path file)
+            throws IOException {
+        SnapshotFile snapshot = SnapshotFile.read(file);
+        Airport airport = new Airport(snapshot.capacity);
+        airport.graph = snapshot.graph;
+        airport.packed = snapshot;
+        airport.connectivity.markStale();
+        return airport;
+    }
+
+    /**
+     * Writes the terminals and shuttles of this airport to a compact binary
+     * file that loadSnapshot can map back in. Departure schedules are not
+     * included.
+     *
+     * @param file file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public void writeSnapshot(java.nio.file.Path file) throws IOException {
+        unpack();
+        SnapshotFile.write(graph(), getCapacity(), file);
+    }
+
+    /**
+     * Creates the shuttle objects and adjacency lists of a loaded snapshot
+     * if that has not happened yet. Must not be called with 'lock' held.
+     */
+    private void unpack() {
+        if (packed == null)
+            return;
+        long stamp = lock.readLock();
+        try {
+            unpackLocked();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Same as unpack(), for callers that hold the read or write lock.
+     */
+    private void unpackLocked() {
+        if (packed == null)
+            return;
+        synchronized (snapshotLock) {
+            SnapshotFile snapshot = packed;
+            if (snapshot != null) {
+                ShuttleBase[] shuttles =
+                        new ShuttleBase[snapshot.graph.edgeCount()];
+                adjList = snapshot.unpack(shuttles);
+                // Nothing can have changed the network while it was packed
+                if (graph == snapshot.graph)
+                    graph = snapshot.graph.withShuttles(shuttles);
+                packed = null;
+            }
+        }
+    }
+
+    @Override
+    public TerminalBase opposite(ShuttleBase shuttle, TerminalBase terminal) {
+        if (shuttle.getOrigin().getId().equals(terminal.getId()))
+            return shuttle.getDestination();
+        if (shuttle.getDestination().getId().equals(terminal.getId()))
+            return shuttle.getOrigin();
+
+        return null;
+    }
+
+    @Override
+    public TerminalBase insertTerminal(TerminalBase terminal) {
+        long stamp = lock.writeLock();
+        try {
+            unpackLocked();
+            return insertTerminalLocked(terminal);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Same as insertTerminal, for callers that hold the write lock and have
+     * unpacked the airport.
+     */
+    private TerminalBase insertTerminalLocked(TerminalBase terminal) {
+        if (adjList.putIfAbsent(terminal, new ArrayList<>()) == null) {
+            version++;
+            connectivity.terminalInserted(terminal);
+            changeLog.append(ChangeLog.Kind.TERMINAL_INSERTED, terminal, null,
+                    null);
+        }
+        return terminal;
+    }
+
+    @Override
+    public ShuttleBase insertShuttle(TerminalBase origin, TerminalBase destination, int time) {
+        long stamp = lock.writeLock();
+        try {
+            unpackLocked();
+            return insertShuttleLocked(origin, destination, time);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Same as insertShuttle, for callers that hold the write lock and have
+     * unpacked the airport.
+     */
+    private ShuttleBase insertShuttleLocked(TerminalBase origin,
+            TerminalBase destination, int time) {
+        Shuttle shuttle = new Shuttle(origin, destination, time);
+        ArrayList<ShuttleBase> list;
+        list = adjList.get(origin);
+        shuttle.originSlot = list.size();
+        list.add(shuttle);
+        list = adjList.get(destination);
+        shuttle.destinationSlot = list.size();
+        list.add(shuttle);
+        version++;
+        connectivity.shuttleInserted(shuttle);
+        changeLog.append(ChangeLog.Kind.SHUTTLE_INSERTED, null, shuttle, null);
+        if (hubTrees != null)
+            hubTrees.shuttleInserted(shuttle);
+        return shuttle;
+    }
+
+    @Override
+    public boolean removeTerminal(TerminalBase terminal) {
+        long stamp = lock.writeLock();
+        try {
+            unpackLocked();
+            return removeTerminalLocked(terminal);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Same as removeTerminal, for callers that hold the write lock and have
+     * unpacked the airport.
+     */
+    private boolean removeTerminalLocked(TerminalBase terminal) {
+        ArrayList<ShuttleBase> incident = adjList.remove(terminal);
+        if (incident == null)
+            return false;
+
+        for (ShuttleBase sh : incident) {
+            Shuttle shuttle = (Shuttle) sh;
+            if (shuttle.getOrigin() != terminal)
+                detach(shuttle.getOrigin(), shuttle.originSlot);
+            if (shuttle.getDestination() != terminal)
+                detach(shuttle.getDestination(), shuttle.destinationSlot);
+            shuttle.originSlot = -1;
+            shuttle.destinationSlot = -1;
+        }
+        version++;
+        connectivity.markStale();
+        changeLog.append(ChangeLog.Kind.TERMINAL_REMOVED, terminal, null,
+                null);
+        if (hubTrees != null)
+            hubTrees.terminalRemoved(terminal, incident);
+
+        return true;
+    }
+
+    @Override
+    public boolean removeShuttle(ShuttleBase sh) {
+        if (!(sh instanceof Shuttle))
+            return false;
+        long stamp = lock.writeLock();
+        try {
+            return removeShuttleLocked((Shuttle) sh);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Same as removeShuttle, for callers that hold the write lock.
+     */
+    private boolean removeShuttleLocked(Shuttle shuttle) {
+        if (!isInserted(shuttle))
+            return false;
+
+        detach(shuttle.getOrigin(), shuttle.originSlot);
+        shuttle.originSlot = -1;
+        detach(shuttle.getDestination(), shuttle.destinationSlot);
+        shuttle.destinationSlot = -1;
+        version++;
+        connectivity.markStale();
+        changeLog.append(ChangeLog.Kind.SHUTTLE_REMOVED, null, shuttle, null);
+        if (hubTrees != null)
+            hubTrees.shuttleRemoved(shuttle);
+        return true;
+    }
+
+    /**
+     * Returns whether a shuttle is currently in this airport. The caller
+     * must hold the lock.
+     */
+    private boolean isInserted(Shuttle shuttle) {
+        ArrayList<ShuttleBase> list = adjList.get(shuttle.getOrigin());
+        return shuttle.originSlot >= 0 && list != null
+                && shuttle.originSlot < list.size()
+                && list.get(shuttle.originSlot) == shuttle;
+    }
+
+    /**
+     * Sets the times at which the given shuttle departs from one of its
+     * terminals, replacing any previous schedule for that direction. These
+     * are used by findEarliestArrival. Only the timetable is rebuilt;
+     * routing indexes and cached paths are unaffected, since travel times
+     * do not change.
+     *
+     * @param shuttle shuttle in the airport
+     * @param from origin or destination of the shuttle
+     * @param minutes departure times, in minutes after midnight, in any
+     *                order
+     * @return true if the schedule was set, false if the shuttle is not in
+     * the airport or 'from' is not one of its terminals
+     * @throws IllegalArgumentException if a departure time is negative
+     */
+    public boolean setDepartures(ShuttleBase shuttle, TerminalBase from,
+            int... minutes) {
+        if (!(shuttle instanceof Shuttle))
+            return false;
+        int[] sorted = minutes.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && sorted[0] < 0)
+            throw new IllegalArgumentException("Departure times must not be "
+                    + "negative: " + sorted[0]);
+
+        long stamp = lock.writeLock();
+        try {
+            unpackLocked();
+            return setDeparturesLocked((Shuttle) shuttle, from, sorted);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Same as setDepartures, for callers that hold the write lock and have
+     * unpacked the airport. The departure times must already be sorted and
+     * non-negative, and the array is kept.
+     */
+    private boolean setDeparturesLocked(Shuttle shuttle, TerminalBase from,
+            int[] sorted) {
+        if (!isInserted(shuttle))
+            return false;
+        if (shuttle.getOrigin() == from)
+            shuttle.originDepartures = sorted;
+        else if (shuttle.getDestination() == from)
+            shuttle.destinationDepartures = sorted;
+        else
+            return false;
+        scheduleVersion++;
+        changeLog.append(ChangeLog.Kind.DEPARTURES_SET, from, shuttle, sorted);
+        return true;
+    }
+
+    /**
+     * Helper function to remove the entry at the given slot of a terminal's
+     * adjacency list in O(1), by moving the last entry into the hole and
+     * updating that shuttle's handle. The caller must hold the write lock.
+     *
+     * @param terminal terminal whose adjacency list is to be updated
+     * @param slot index of the entry to remove
+     */
+    private void detach(TerminalBase terminal, int slot) {
+        ArrayList<ShuttleBase> list = adjList.get(terminal);
+        int last = list.size() - 1;
+        Shuttle moved = (Shuttle) list.remove(last);
+        if (slot != last) {
+            list.set(slot, moved);
+            moved.moveSlot(terminal, last, slot);
+        }
+    }
+
+    @Override
+    public List<ShuttleBase> outgoingShuttles(TerminalBase terminal) {
+        long stamp = lock.readLock();
+        try {
+            unpackLocked();
+            List<ShuttleBase> list = this.adjList.get(terminal);
+            return list == null ? null : List.copyOf(list);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of mutations made to the network so far. Any
+     * structure derived from the network is stale once this changes.
+     *
+     * @return current network version
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * Returns the terminal with the given id, for example to find the
+     * terminals of an airport read by loadSnapshot. If several terminals
+     * share the id, the one inserted first is returned.
+     *
+     * @param id id of the terminal
+     * @return terminal with that id, or null if there is none
+     */
+    public TerminalBase getTerminal(String id) {
+        AirportGraph g = graph();
+        int u = g.idOf(id);
+        return u < 0 ? null : g.terminals[u];
+    }
+
+    /**
+     * Returns the CSR snapshot of the current network, rebuilding it if the
+     * network has been mutated since the last snapshot was taken. The
+     * snapshot is immutable, so callers may keep searching it while writers
+     * go on mutating the airport.
+     *
+     * @return up-to-date snapshot of the network
+     */
+    AirportGraph graph() {
+        AirportGraph g = graph;
+        if (g != null && g.version == version)
+            return g;
+
+        long stamp = lock.readLock();
+        try {
+            return graphLocked();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Same as graph(), for callers that hold the read or write lock.
+     */
+    private AirportGraph graphLocked() {
+        synchronized (snapshotLock) {
+            AirportGraph g = graph;
+            if (g == null || g.version != version)
+                graph = g = new AirportGraph(adjList, version);
+            return g;
+        }
+    }
+
+    /**
+     * Returns the search strategy used by the path queries.
+     *
+     * @return current routing mode
+     */
+    public RoutingMode getRoutingMode() {
+        return routingMode;
+    }
+
+    /**
+     * Sets the search strategy used by the path queries.
+     *
+     * @param routingMode routing mode to use
+     */
+    public void setRoutingMode(RoutingMode routingMode) {
+        this.routingMode = routingMode;
+    }
+
+    /**
+     * Sets how many landmarks LANDMARKS mode uses and how they are chosen.
+     * The landmark tables are rebuilt on the next query.
+     *
+     * @param count number of landmark terminals
+     * @param selection strategy for choosing the landmarks
+     */
+    public void configureLandmarks(int count,
+            LandmarkIndex.Selection selection) {
+        synchronized (landmarksLock) {
+            this.landmarkCount = count;
+            this.landmarkSelection = selection;
+            this.landmarks = null;
+        }
+    }
+
+    /**
+     * Returns the landmark tables for the given snapshot, recomputing them
+     * if they were built for a different one.
+     *
+     * @param g snapshot the caller is searching
+     * @return landmark index of the snapshot
+     */
+    LandmarkIndex landmarks(AirportGraph g) {
+        LandmarkIndex index = landmarks;
+        if (index != null && index.graph == g)
+            return index;
+        synchronized (landmarksLock) {
+            index = landmarks;
+            if (index == null || index.graph != g)
+                landmarks = index = new LandmarkIndex(g, landmarkCount,
+                        landmarkSelection, g.size);
+            return index;
+        }
+    }
+
+    /**
+     * Returns the contraction hierarchy of the given snapshot, rebuilding it
+     * if it was built for a different one.
+     *
+     * @param g snapshot the caller is searching
+     * @return contraction hierarchy of the snapshot
+     */
+    ContractionHierarchy hierarchy(AirportGraph g) {
+        ContractionHierarchy index = hierarchy;
+        if (index != null && index.graph == g)
+            return index;
+        synchronized (hierarchyLock) {
+            index = hierarchy;
+            if (index == null || index.graph != g)
+                hierarchy = index = new ContractionHierarchy(g);
+            return index;
+        }
+    }
+
+    /**
+     * Returns the all-pairs route table of the given snapshot, recomputing
+     * it in parallel if it was built for a different one.
+     *
+     * @param g snapshot the caller is searching
+     * @return route table of the snapshot
+     */
+    RouteTable routeTable(AirportGraph g) {
+        RouteTable index = routeTable;
+        if (index != null && index.graph == g)
+            return index;
+        synchronized (routeTableLock) {
+            index = routeTable;
+            if (index == null || index.graph != g)
+                routeTable = index = new RouteTable(g,
+                        ForkJoinPool.commonPool());
+            return index;
+        }
+    }
+
+    /**
+     * Splits the terminals into cells for OVERLAY mode, for example one per
+     * site. Each cell precomputes the fastest times between its boundary
+     * terminals, and after a change only the cells whose terminals or
+     * shuttles changed are recomputed.
+     *
+     * @param cellOf returns the cell key of a terminal; keys are compared
+     *               with equals. Null removes the partition.
+     */
+    public void setPartition(Function<? super TerminalBase, ?> cellOf) {
+        synchronized (overlayLock) {
+            this.partition = cellOf;
+            this.overlay = null;
+        }
+    }
+
+    /**
+     * Returns the overlay of the given snapshot, rebuilding it if it was
+     * built for a different one. Cells that did not change since the
+     * previous overlay keep their boundary times.
+     *
+     * @param g snapshot the caller is searching
+     * @return overlay of the snapshot, or null if no partition is set
+     */
+    OverlayIndex overlay(AirportGraph g) {
+        OverlayIndex index = overlay;
+        if (index != null && index.graph == g)
+            return index;
+        synchronized (overlayLock) {
+            index = overlay;
+            if (partition == null)
+                return null;
+            if (index == null || index.graph != g)
+                overlay = index = new OverlayIndex(g, partition, index);
+            return index;
+        }
+    }
+
+    /**
+     * Returns the connection timetable of the given snapshot, rebuilding it
+     * if it was built for a different one or a schedule has changed since.
+     *
+     * @param g snapshot the caller is searching
+     * @return timetable of the snapshot
+     */
+    Timetable timetable(AirportGraph g) {
+        Timetable index = timetable;
+        if (index != null && index.graph == g
+                && index.scheduleVersion == scheduleVersion)
+            return index;
+        synchronized (timetableLock) {
+            index = timetable;
+            // Read the version first, so a concurrent change forces a rebuild
+            long schedules = scheduleVersion;
+            if (index == null || index.graph != g
+                    || index.scheduleVersion != schedules)
+                timetable = index = new Timetable(g, schedules);
+            return index;
+        }
+    }
+
+    /**
+     * Puts an LRU cache of the given capacity in front of findShortestPath
+     * and findFastestPath, replacing any existing cache. A capacity of 0
+     * disables caching.
+     *
+     * @param capacity maximum number of cached paths
+     */
+    public void setPathCacheCapacity(int capacity) {
+        pathCache = capacity > 0 ? new PathCache(capacity) : null;
+    }
+
+    /**
+     * Replaces the change log with an empty one retaining at least the
+     * given number of changes. Sequence numbers carry on from the old log.
+     *
+     * @param capacity minimum number of changes retained
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public void setChangeLogCapacity(int capacity) {
+        long stamp = lock.writeLock();
+        try {
+            changeLog = new ChangeLog(capacity, changeLog.next());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the sequence number the next mutation will be logged with.
+     * A subscriber that has seen everything before it can poll readChanges
+     * from there.
+     *
+     * @return next change sequence number
+     */
+    public long nextChangeSequence() {
+        return changeLog.next();
+    }
+
+    /**
+     * Returns up to max logged mutations, starting at sequence number from.
+     * Only the most recent mutations are kept (see setChangeLogCapacity); a
+     * subscriber that falls further behind must start again from
+     * checkpoint().
+     *
+     * @param from sequence number of the first change wanted
+     * @param max maximum number of changes to return
+     * @return changes in sequence order, empty if there are none yet
+     * @throws IllegalArgumentException if from is beyond the latest change
+     * or no longer retained
+     */
+    public List<ChangeLog.Change> readChanges(long from, int max) {
+        return changeLog.read(from, max);
+    }
+
+    /**
+     * Returns the current network compacted into a log of insertions only:
+     * every terminal, then every shuttle, then every non-empty departure
+     * schedule. The sequence number of the first change it does not include
+     * is returned with it.
+     *
+     * @return compacted log of the airport
+     */
+    public ChangeLog.Checkpoint checkpoint() {
+        unpack();
+        long stamp = lock.readLock();
+        try {
+            List<ChangeLog.Change> changes = new ArrayList<>();
+            List<Shuttle> shuttles = new ArrayList<>();
+            for (TerminalBase terminal : adjList.keySet())
+                changes.add(new ChangeLog.Change(changes.size(),
+                        ChangeLog.Kind.TERMINAL_INSERTED, terminal, null,
+                        null));
+            for (Map.Entry<TerminalBase, ArrayList<ShuttleBase>> entry
+                    : adjList.entrySet()) {
+                ArrayList<ShuttleBase> list = entry.getValue();
+                for (int i = 0; i < list.size(); i++) {
+                    Shuttle shuttle = (Shuttle) list.get(i);
+                    // Each shuttle is listed at both ends; take its origin's
+                    if (shuttle.getOrigin() == entry.getKey()
+                            && shuttle.originSlot == i) {
+                        changes.add(new ChangeLog.Change(changes.size(),
+                                ChangeLog.Kind.SHUTTLE_INSERTED, null,
+                                shuttle, null));
+                        shuttles.add(shuttle);
+                    }
+                }
+            }
+            for (Shuttle shuttle : shuttles) {
+                if (shuttle.originDepartures.length > 0)
+                    changes.add(new ChangeLog.Change(changes.size(),
+                            ChangeLog.Kind.DEPARTURES_SET, shuttle.getOrigin(),
+                            shuttle, shuttle.originDepartures));
+                if (shuttle.destinationDepartures.length > 0)
+                    changes.add(new ChangeLog.Change(changes.size(),
+                            ChangeLog.Kind.DEPARTURES_SET,
+                            shuttle.getDestination(), shuttle,
+                            shuttle.destinationDepartures));
+            }
+            return new ChangeLog.Checkpoint(changeLog.next(), changes);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Builds a new airport by replaying logged changes, typically the
+     * changes of a checkpoint.
+     *
+     * @param capacity capacity of the airport shuttles
+     * @param changes changes to apply, in sequence order
+     * @return airport holding the result of the changes
+     */
+    public static Airport replay(int capacity,
+            List<ChangeLog.Change> changes) {
+        Airport airport = new Airport(capacity);
+        airport.applyChanges(changes);
+        return airport;
+    }
+
+    /**
+     * Applies changes logged by another airport to this one, which is
+     * expected to mirror it. Shuttles are recreated here, and removals and
+     * schedules of the other airport's shuttles are mapped to the copies
+     * made by earlier calls; changes to shuttles this airport never saw
+     * inserted are ignored. The changes are applied under one write lock,
+     * so queries see either none or all of them.
+     *
+     * @param changes changes to apply, in sequence order
+     */
+    public void applyChanges(List<ChangeLog.Change> changes) {
+        long stamp = lock.writeLock();
+        try {
+            unpackLocked();
+            if (replayed == null)
+                replayed = new IdentityHashMap<>();
+            for (ChangeLog.Change change : changes)
+                applyLocked(change);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void applyLocked(ChangeLog.Change change) {
+        ShuttleBase copy;
+        switch (change.kind) {
+            case TERMINAL_INSERTED:
+                insertTerminalLocked(change.terminal);
+                break;
+            case SHUTTLE_INSERTED:
+                ShuttleBase shuttle = change.shuttle;
+                replayed.put(shuttle, insertShuttleLocked(shuttle.getOrigin(),
+                        shuttle.getDestination(), shuttle.getTime()));
+                break;
+            case SHUTTLE_REMOVED:
+                copy = replayed.remove(change.shuttle);
+                if (copy != null)
+                    removeShuttleLocked((Shuttle) copy);
+                break;
+            case TERMINAL_REMOVED:
+                TerminalBase gone = change.terminal;
+                if (removeTerminalLocked(gone))
+                    replayed.values().removeIf(c -> c.getOrigin().equals(gone)
+                            || c.getDestination().equals(gone));
+                break;
+            case DEPARTURES_SET:
+                copy = replayed.get(change.shuttle);
+                if (copy != null)
+                    setDeparturesLocked((Shuttle) copy, change.terminal,
+                            change.departures);
+                break;
+        }
+    }
+
+    /**
+     * Turns query instrumentation on or off. While it is on, every
+     * findShortestPath, findFastestPath, findAlternativePaths and
+     * findEarliestArrival call records its latency and search counters;
+     * while it is off the queries pay only a null check. Turning it on
+     * again starts from empty statistics.
+     *
+     * @param enabled whether to record query statistics
+     */
+    public void setSearchStatsEnabled(boolean enabled) {
+        searchStats = enabled ? new SearchStats() : null;
+    }
+
+    /**
+     * Returns the query statistics, whose snapshots give latency
+     * percentiles and search counters per query type.
+     *
+     * @return query statistics, or null if instrumentation is off
+     */
+    public SearchStats getSearchStats() {
+        return searchStats;
+    }
+
+    /**
+     * Returns the path cache, whose counters report its size, hit rate and
+     * evictions.
+     *
+     * @return path cache, or null if caching is disabled
+     */
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Returns the betweenness, closeness and eccentricity of every terminal
+     * and the diameter of the network, measured by the same travel and
+     * waiting times as findFastestPath. The per-origin searches run in
+     * parallel on the common ForkJoinPool, and the result is kept until the
+     * network changes. The searches hold no lock, so queries and mutations
+     * go on while they run; concurrent calls on a changed network may each
+     * compute the measures, and the newest result is kept. Zero-time shuttles are allowed, as long as no round
+     * trip takes no time at all.
+     *
+     * @return hub measures, as arrays indexed by terminal id
+     * @throws IllegalArgumentException if some terminals can be travelled
+     * between and back in no time, since the fastest paths through them
+     * cannot be counted
+     */
+    public Centrality analyzeHubs() {
+        AirportGraph g = graph();
+        Centrality result = centrality;
+        if (result != null && result.graph == g)
+            return result;
+        result = new Centrality(g, ForkJoinPool.commonPool());
+        synchronized (centralityLock) {
+            Centrality published = centrality;
+            if (published == null || published.graph.version < g.version)
+                centrality = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether any path joins the two terminals. Inserting terminals
+     * and shuttles keeps the answer at logarithmic cost, without locking;
+     * after a removal the first call rebuilds the components in time linear
+     * in the size of the network.
+     *
+     * @param origin the starting terminal
+     * @param destination the destination terminal
+     * @return true if both terminals are in the airport and connected
+     */
+    public boolean isConnected(TerminalBase origin, TerminalBase destination) {
+        ConnectivityIndex index = connectivity;
+        if (index.isStale()) {
+            long stamp = lock.readLock();
+            try {
+                if (index.isStale())
+                    index.rebuild(graphLocked());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return index.connected(origin, destination);
+    }
+
+    @Override
+    public Path findShortestPath(TerminalBase origin, TerminalBase destination) {
+        SearchStats stats = searchStats;
+        if (stats == null)
+            return shortestPath(origin, destination);
+        long start = stats.start();
+        Path path = shortestPath(origin, destination);
+        stats.finish(SearchStats.Query.SHORTEST, start);
+        return path;
+    }
+
+    @Override
+    public Path findFastestPath(TerminalBase origin, TerminalBase destination) {
+        SearchStats stats = searchStats;
+        if (stats == null)
+            return fastestPath(origin, destination);
+        long start = stats.start();
+        Path path = fastestPath(origin, destination);
+        stats.finish(SearchStats.Query.FASTEST, start);
+        return path;
+    }
+
+    private Path shortestPath(TerminalBase origin, TerminalBase destination) {
+        if (!isConnected(origin, destination))
+            return null;
+        PathCache cache = pathCache;
+        if (cache == null)
+            return searchShortest(origin, destination);
+        return cache.get(origin, destination, PathCache.Query.SHORTEST,
+                version, this::searchShortest);
+    }
+
+    private Path fastestPath(TerminalBase origin, TerminalBase destination) {
+        if (!isConnected(origin, destination))
+            return null;
+        PathCache cache = pathCache;
+        if (cache == null)
+            return searchFastest(origin, destination);
+        return cache.get(origin, destination, PathCache.Query.FASTEST,
+                version, this::searchFastest);
+    }
+
+    /**
+     * Returns the fastest paths from the given origin to every terminal, as
+     * a distance array and a predecessor array indexed by terminal id.
+     * Individual paths can then be extracted with pathTo.
+     *
+     * @param origin the starting terminal
+     * @return tree of fastest paths, or null if origin is not in the airport
+     */
+    public ShortestPathTree findFastestPathsFrom(TerminalBase origin) {
+        AirportGraph g = graph();
+        int source = g.idOf(origin);
+        return source < 0 ? null : ShortestPathTree.fastest(g, source);
+    }
+
+    /**
+     * Returns the fastest paths from the given origin to every terminal,
+     * computed by delta-stepping in parallel across the common ForkJoinPool.
+     * This pays off on very large networks; a bucket width close to a
+     * typical shuttle time plus waiting time is a good starting point.
+     *
+     * @param origin the starting terminal
+     * @param bucketWidth width of the delta-stepping buckets, in minutes
+     * @return tree of fastest paths, or null if origin is not in the airport
+     * @throws IllegalArgumentException if bucketWidth is less than 1
+     */
+    public ShortestPathTree findFastestPathsFrom(TerminalBase origin,
+            int bucketWidth) {
+        if (bucketWidth < 1)
+            throw new IllegalArgumentException("Bucket width must be at "
+                    + "least 1, got " + bucketWidth);
+        AirportGraph g = graph();
+        int source = g.idOf(origin);
+        return source < 0 ? null : ShortestPathTree.fastest(g, source,
+                bucketWidth, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns paths with the fewest shuttles from the given origin to every
+     * terminal, as a shuttle-count array and a predecessor array indexed by
+     * terminal id.
+     *
+     * @param origin the starting terminal
+     * @return tree of fewest-shuttle paths, or null if origin is not in the
+     * airport
+     */
+    public ShortestPathTree findShortestPathsFrom(TerminalBase origin) {
+        AirportGraph g = graph();
+        int source = g.idOf(origin);
+        return source < 0 ? null : ShortestPathTree.fewestShuttles(g, source);
+    }
+
+    /**
+     * Returns the maximum number of passengers per hour that can travel from
+     * origin to destination, given the shuttle capacity and each shuttle's
+     * travel time, along with the bottleneck shuttles that limit it.
+     *
+     * @param origin terminal passengers start from
+     * @param destination terminal passengers travel to
+     * @return passenger flow result, or null if either terminal is not in
+     * the airport
+     */
+    public PassengerFlow findMaxPassengerFlow(TerminalBase origin,
+            TerminalBase destination) {
+        unpack();
+        AirportGraph g = graph();
+        int source = g.idOf(origin);
+        int target = g.idOf(destination);
+        if (source < 0 || target < 0)
+            return null;
+        return PassengerFlow.compute(g, source, target, getCapacity());
+    }
+
+    /**
+     * Returns up to k fastest loopless paths from origin to destination, in
+     * order of travel time, as alternatives for when the fastest route is
+     * unavailable. The routing mode and the path cache are not used.
+     *
+     * @param origin the starting terminal
+     * @param destination the destination terminal
+     * @param k maximum number of paths to return
+     * @return paths in non-decreasing order of time, empty if destination is
+     * not reachable, or null if either terminal is not in the airport
+     */
+    public List<Path> findAlternativePaths(TerminalBase origin,
+            TerminalBase destination, int k) {
+        SearchStats stats = searchStats;
+        if (stats == null)
+            return alternativePaths(origin, destination, k);
+        long start = stats.start();
+        List<Path> paths = alternativePaths(origin, destination, k);
+        stats.finish(SearchStats.Query.ALTERNATIVES, start);
+        return paths;
+    }
+
+    private List<Path> alternativePaths(TerminalBase origin,
+            TerminalBase destination, int k) {
+        AirportGraph g = graph();
+        int source = g.idOf(origin);
+        int target = g.idOf(destination);
+        if (source < 0 || target < 0)
+            return null;
+        if (!isConnected(origin, destination))
+            return new ArrayList<>();
+        return KShortestPaths.fastestPaths(g, source, target, k);
+    }
+
+    /**
+     * Returns the journey that reaches destination earliest when setting off
+     * from origin at the given time, riding only scheduled departures (see
+     * setDepartures). A terminal's waiting time is the minimum time needed
+     * there before boarding, including at origin.
+     *
+     * @param origin the starting terminal
+     * @param destination the destination terminal
+     * @param departureTime time of arrival at origin, in minutes after
+     *                      midnight
+     * @return Path whose time is the minutes from departureTime until
+     * arrival, or null if destination cannot be reached on today's schedule
+     */
+    public Path findEarliestArrival(TerminalBase origin,
+            TerminalBase destination, int departureTime) {
+        SearchStats stats = searchStats;
+        if (stats == null)
+            return earliestArrival(origin, destination, departureTime);
+        long start = stats.start();
+        Path path = earliestArrival(origin, destination, departureTime);
+        stats.finish(SearchStats.Query.EARLIEST_ARRIVAL, start);
+        return path;
+    }
+
+    private Path earliestArrival(TerminalBase origin,
+            TerminalBase destination, int departureTime) {
+        if (!isConnected(origin, destination))
+            return null;
+        AirportGraph g = graph();
+        int source = g.idOf(origin);
+        int target = g.idOf(destination);
+        if (source < 0 || target < 0)
+            return null;
+        return timetable(g).earliestArrival(source, target, departureTime);
+    }
+
+    /**
+     * Sets the hub terminals whose fastest-path trees are maintained
+     * incrementally as shuttles are inserted and removed, replacing any
+     * previous hubs. An empty collection stops maintaining trees.
+     *
+     * @param hubs hub terminals; terminals not in the airport are ignored
+     */
+    public void setHubTerminals(Collection<? extends TerminalBase> hubs) {
+        long stamp = lock.writeLock();
+        try {
+            unpackLocked();
+            hubTrees = hubs.isEmpty() ? null : new HubTrees(adjList, hubs);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the fastest path from a hub terminal to the given destination,
+     * read from the hub's maintained tree without searching.
+     *
+     * @param hub hub terminal set with setHubTerminals
+     * @param destination the destination terminal
+     * @return fastest path, or null if hub is not a hub or destination is
+     * not reachable from it
+     */
+    public Path findHubPath(TerminalBase hub, TerminalBase destination) {
+        long stamp = lock.readLock();
+        try {
+            return hubTrees == null ? null : hubTrees.path(hub, destination);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the fastest path for each (origins[i], destinations[i]) pair.
+     * Pairs are grouped by origin and each distinct origin is searched once,
+     * in parallel across the common ForkJoinPool. The routing mode and the
+     * path cache are not used.
+     *
+     * @param origins starting terminal of each query
+     * @param destinations destination terminal of each query
+     * @return list holding the Path of each query in order, with null where
+     * the destination is not reachable
+     * @throws IllegalArgumentException if the lists differ in length
+     */
+    public List<Path> findFastestPaths(List<? extends TerminalBase> origins,
+            List<? extends TerminalBase> destinations) {
+        if (origins.size() != destinations.size())
+            throw new IllegalArgumentException("Got " + origins.size()
+                    + " origins but " + destinations.size() + " destinations");
+
+        AirportGraph g = graph();
+        int[] sources = new int[origins.size()];
+        int[] targets = new int[destinations.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = g.idOf(origins.get(i));
+            targets[i] = g.idOf(destinations.get(i));
+        }
+        return Arrays.asList(BatchRouter.fastestPaths(g, sources, targets,
+                ForkJoinPool.commonPool()));
+    }
+
+    private Path searchShortest(TerminalBase origin, TerminalBase destination) {
+        AirportGraph g = graph();
+        int source = g.idOf(origin);
+        int target = g.idOf(destination);
+        if (source < 0 || target < 0)
+            return null;
+
+        if (routingMode == RoutingMode.BIDIRECTIONAL)
+            return BidirectionalSearch.shortestPath(g, source, target);
+        if (routingMode == RoutingMode.TABLE)
+            return routeTable(g).shortestPath(source, target);
+        return FrontierBfs.shortestPath(g, source, target);
+    }
+
+    private Path searchFastest(TerminalBase origin, TerminalBase destination) {
+        AirportGraph g = graph();
+        int source = g.idOf(origin);
+        int target = g.idOf(destination);
+        if (source < 0 || target < 0)
+            return null;
+
+        if (routingMode == RoutingMode.BIDIRECTIONAL)
+            return BidirectionalSearch.fastestPath(g, source, target);
+        if (routingMode == RoutingMode.LANDMARKS)
+            return landmarks(g).fastestPath(source, target);
+        if (routingMode == RoutingMode.CONTRACTION)
+            return hierarchy(g).fastestPath(source, target);
+        if (routingMode == RoutingMode.TABLE)
+            return routeTable(g).fastestPath(source, target);
+        if (routingMode == RoutingMode.OVERLAY) {
+            OverlayIndex index = overlay(g);
+            if (index != null)
+                return index.fastestPath(source, target);
+        }
+        return g.fastestPath(source, target);
+    }
+
+    static class Terminal extends TerminalBase {
+
+        /**
+         * Creates a new TerminalBase instance with the given terminal ID
+         * and waiting time.
+         *
+         * @param id          terminal ID
+         * @param waitingTime waiting time for the terminal, in minutes
+         */
+        public Terminal(String id, int waitingTime) {
+            super(id, waitingTime);
+        }
+    }
+
+    static class Shuttle extends ShuttleBase {
+
+        /* Index of this shuttle in its origin's adjacency list, or -1 */
+        int originSlot = -1;
+        /* Index of this shuttle in its destination's adjacency list, or -1 */
+        int destinationSlot = -1;
+        /* Sorted departure times from the origin, in minutes after midnight */
+        volatile int[] originDepartures = new int[0];
+        /* Sorted departure times from the destination */
+        volatile int[] destinationDepartures = new int[0];
+
+        /**
+         * Creates a new ShuttleBase instance, travelling from origin to
+         * destination and requiring 'time' minutes to travel.
+         *
+         * @param origin      origin terminal
+         * @param destination destination terminal
+         * @param time        time required to travel, in minutes
+         */
+        public Shuttle(TerminalBase origin, TerminalBase destination, int time) {
+            super(origin, destination, time);
+        }
+
+        /**
+         * Updates the handle that points at slot 'from' of the given
+         * terminal's adjacency list to point at slot 'to' instead.
+         *
+         * @param terminal terminal whose adjacency list was changed
+         * @param from previous index of this shuttle in the list
+         * @param to new index of this shuttle in the list
+         */
+        void moveSlot(TerminalBase terminal, int from, int to) {
+            if (getOrigin() == terminal && originSlot == from)
+                originSlot = to;
+            else
+                destinationSlot = to;
+        }
+
+        /**
+         * Returns the scheduled departure times of this shuttle from the
+         * given end.
+         *
+         * @param terminal origin or destination of this shuttle
+         * @return sorted departure times, in minutes after midnight
+         */
+        int[] departuresFrom(TerminalBase terminal) {
+            return getOrigin() == terminal ? originDepartures
+                    : destinationDepartures;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Airport a = new Airport(3);
+        Terminal terminalA = (Terminal) a.insertTerminal(new Terminal("A", 1));
+        Terminal terminalB = (Terminal) a.insertTerminal(new Terminal("B", 3));
+        Terminal terminalC = (Terminal) a.insertTerminal(new Terminal("C", 4));
+        Terminal terminalD = (Terminal) a.insertTerminal(new Terminal("D", 2));
+
+        Shuttle shuttle1 = (Shuttle) a.insertShuttle(terminalA, terminalB, 2);
+        Shuttle shuttle2 = (Shuttle) a.insertShuttle(terminalA, terminalC, 5);
+        Shuttle shuttle3 = (Shuttle) a.insertShuttle(terminalA, terminalD, 18);
+        Shuttle shuttle4 = (Shuttle) a.insertShuttle(terminalB, terminalD, 8);
+        Shuttle shuttle5 = (Shuttle) a.insertShuttle(terminalC, terminalD, 15);
+
+        // Opposite
+        assert a.opposite(shuttle1, terminalA).getId().equals("B");
+
+        // Outgoing Shuttles
+        assert a.outgoingShuttles(terminalA).stream()
+                .map(ShuttleBase::getTime)
+                .collect(Collectors.toList()).containsAll(List.of(2, 5, 18));
+
+
+        // Remove Terminal
+        //        Terminal terminalTest = new Terminal("E", 12);
+        //        System.out.println(a.removeTerminal(terminalTest));
+        a.removeTerminal(terminalC);
+        assert a.outgoingShuttles(terminalA).stream()
+                .map(ShuttleBase::getTime)
+                .collect(Collectors.toList()).containsAll(List.of(2, 18));
+
+        // Shortest path
+        Path shortestPath = a.findShortestPath(terminalA, terminalD);
+        System.out.println(shortestPath.terminals);
+        System.out.println(shortestPath.time);
+        assert shortestPath.terminals.stream()
+                .map(TerminalBase::getId)
+                .collect(Collectors.toList()).equals(List.of("A", "D"));
+        assert shortestPath.time == 19;
+
+        // Fastest path
+        Path fastestPath = a.findFastestPath(terminalA, terminalD);
+        System.out.println(fastestPath.terminals);
+        System.out.println(fastestPath.time);
+
+        assert fastestPath.terminals.stream()
+                .map(TerminalBase::getId)
+                .collect(Collectors.toList()).equals(List.of("A", "B", "D"));
+
+
+        assert fastestPath.time == 14;
+
+        Airport b = new Airport(6);
+        Terminal A = (Terminal) b.insertTerminal(new Terminal("A_", 1));
+        Terminal B = (Terminal) b.insertTerminal(new Terminal("B_", 2));
+        Terminal C = (Terminal) b.insertTerminal(new Terminal("C_", 4));
+        Terminal D = (Terminal) b.insertTerminal(new Terminal("D_", 2));
+
+        Shuttle s1 = (Shuttle) b.insertShuttle(A, B, 3);
+        Shuttle s2 = (Shuttle) b.insertShuttle(A, D, 1);
+        Shuttle s3 = (Shuttle) b.insertShuttle(A, C, 3);
+        Shuttle s4 = (Shuttle) b.insertShuttle(B, D, 4);
+        Shuttle s5 = (Shuttle) b.insertShuttle(C, D, 2);
+
+        Path path = b.findFastestPath(B, C);
+        System.out.println(path.terminals);
+        assert path.terminals.stream()
+                .map(TerminalBase::getId)
+                .collect(Collectors.toList()).equals(List.of("B_", "A_", "C_"));
+        System.out.println(path.time);
+        assert path.time == 9;
+
+        // Bidirectional search agrees with FORWARD
+        b.setRoutingMode(RoutingMode.BIDIRECTIONAL);
+        Path bidirectional = b.findFastestPath(B, C);
+        assert bidirectional.terminals.equals(path.terminals);
+        assert bidirectional.time == path.time;
+        assert b.findShortestPath(B, C).terminals.size() == 3;
+        b.setRoutingMode(RoutingMode.FORWARD);
+
+        // Landmark A* agrees with FORWARD
+        b.setRoutingMode(RoutingMode.LANDMARKS);
+        Path landmarked = b.findFastestPath(B, C);
+        assert landmarked.terminals.equals(path.terminals);
+        assert landmarked.time == path.time;
+        b.setRoutingMode(RoutingMode.FORWARD);
+
+        // Contraction hierarchy agrees with FORWARD
+        b.setRoutingMode(RoutingMode.CONTRACTION);
+        Path contracted = b.findFastestPath(B, C);
+        assert contracted.terminals.equals(path.terminals);
+        assert contracted.time == path.time;
+        b.setRoutingMode(RoutingMode.FORWARD);
+
+        // Route table agrees with FORWARD
+        b.setRoutingMode(RoutingMode.TABLE);
+        Path tabled = b.findFastestPath(B, C);
+        assert tabled.terminals.equals(path.terminals);
+        assert tabled.time == path.time;
+        b.setRoutingMode(RoutingMode.FORWARD);
+
+        // Passenger flow: B_ sends 60/h via A_ and 45/h via D_, so the
+        // cut is its own two shuttles
+        PassengerFlow flow = b.findMaxPassengerFlow(B, C);
+        assert flow.maxFlow == 105;
+        assert flow.bottlenecks().size() == 2
+                && flow.bottlenecks().containsAll(List.of(s1, s4));
+
+        // Earliest arrival with a departure every minute agrees with
+        // FORWARD
+        int[] everyMinute = new int[24 * 60];
+        for (int minute = 0; minute < everyMinute.length; minute++)
+            everyMinute[minute] = minute;
+        for (Shuttle s : List.of(s1, s2, s3, s4, s5)) {
+            b.setDepartures(s, s.getOrigin(), everyMinute);
+            b.setDepartures(s, s.getDestination(), everyMinute);
+        }
+        Path earliest = b.findEarliestArrival(B, C, 600);
+        assert earliest.terminals.equals(path.terminals);
+        assert earliest.time == path.time;
+
+        // Alternative paths (Yen)
+        assert b.findAlternativePaths(B, C, 3).stream()
+                .map(p -> p.time)
+                .collect(Collectors.toList()).equals(List.of(9, 10, 11));
+
+        // Delta-stepping agrees with FORWARD
+        Path stepped = b.findFastestPathsFrom(B, 2).pathTo(C);
+        assert stepped.terminals.equals(path.terminals);
+        assert stepped.time == path.time;
+
+        // Overlay, with A_ and B_ in one cell and C_ and D_ in the other,
+        // agrees with FORWARD
+        b.setPartition(t -> t == A || t == B ? 0 : 1);
+        b.setRoutingMode(RoutingMode.OVERLAY);
+        Path overlaid = b.findFastestPath(B, C);
+        assert overlaid.terminals.equals(path.terminals);
+        assert overlaid.time == path.time;
+        b.setRoutingMode(RoutingMode.FORWARD);
+
+        // Hub trees follow removals
+        b.setHubTerminals(List.of(B));
+        assert b.findHubPath(B, C).time == 9;
+        b.removeShuttle(s1);
+        Path hubPath = b.findHubPath(B, C);
+        assert hubPath.terminals.stream()
+                .map(TerminalBase::getId)
+                .collect(Collectors.toList()).equals(List.of("B_", "D_", "C_"));
+        assert hubPath.time == 10;
+        assert b.findFastestPath(B, C).time == 10;
+
+        // Snapshot round trip
+        java.nio.file.Path file = java.nio.file.Files.createTempFile(
+                "airport", ".snapshot");
+        try {
+            b.writeSnapshot(file);
+            Airport loaded = loadSnapshot(file);
+            Path reloaded = loaded.findFastestPath(loaded.getTerminal("B_"),
+                    loaded.getTerminal("C_"));
+            assert reloaded.terminals.stream()
+                    .map(TerminalBase::getId)
+                    .collect(Collectors.toList())
+                    .equals(List.of("B_", "D_", "C_"));
+            assert reloaded.time == 10;
+        } finally {
+            java.nio.file.Files.delete(file);
+        }
+
+        // Change log replay, schedules included
+        ChangeLog.Checkpoint checkpoint = b.checkpoint();
+        Airport replica = replay(6, checkpoint.changes);
+        assert replica.findFastestPath(B, C).time == 10;
+        assert replica.findEarliestArrival(B, C, 600).time == 10;
+        b.insertShuttle(B, C, 1);
+        replica.applyChanges(b.readChanges(checkpoint.sequence, 10));
+        assert replica.findFastestPath(B, C).time == 3;
+
+        Airport c = new Airport(6);
+        Terminal Ac = (Terminal) c.insertTerminal(new Terminal("A_c", 1));
+        Terminal Bc = (Terminal) c.insertTerminal(new Terminal("B_c", 10));
+        Terminal Cc = (Terminal) c.insertTerminal(new Terminal("C_c", 2));
+        Terminal Dc = (Terminal) c.insertTerminal(new Terminal("D_c", 2));
+
+        Shuttle s4_c = (Shuttle) c.insertShuttle(Ac, Cc, 10);
+        Shuttle s1_c = (Shuttle) c.insertShuttle(Ac, Bc, 2);
+        Shuttle s2_c = (Shuttle) c.insertShuttle(Bc, Dc, 8);
+        Shuttle s3_c = (Shuttle) c.insertShuttle(Cc, Dc, 8);
+
+        Path pathC = c.findFastestPath(Ac, Dc);
+        System.out.println(pathC.terminals);
+
+        // Hub analytics with a zero-time shuttle: P_ reaches R_ in one
+        // minute both directly and through Q_, and R_ reaches P_ in two
+        // minutes both directly and through Q_, so Q_ lies on half of the
+        // fastest paths each way
+        Airport h = new Airport(6);
+        Terminal P = (Terminal) h.insertTerminal(new Terminal("P_", 0));
+        Terminal Q = (Terminal) h.insertTerminal(new Terminal("Q_", 0));
+        Terminal R = (Terminal) h.insertTerminal(new Terminal("R_", 1));
+        h.insertShuttle(P, R, 1);
+        h.insertShuttle(Q, R, 0);
+        h.insertShuttle(P, Q, 1);
+        Centrality hubs = h.analyzeHubs();
+        assert hubs.betweenness[hubs.idOf(P)] == 0;
+        assert hubs.betweenness[hubs.idOf(Q)] == 1;
+        assert hubs.betweenness[hubs.idOf(R)] == 0;
+    }
+}
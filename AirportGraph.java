@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A frozen compressed-sparse-row (CSR) snapshot of an airport's shuttle
+ * network.
+ *
+ * Terminals are renumbered to dense int ids 0..size()-1 and every shuttle
+ * contributes one directed edge slot at each of its two terminals. The
+ * outgoing edges of terminal u occupy slots offsets[u]..offsets[u + 1] - 1
+ * of the targets/weights arrays, so searches run entirely on primitive
+ * arrays without hashing or object comparisons.
+ */
+final class AirportGraph {
+
+    /* Number of terminals in the snapshot */
+    final int size;
+    /* Terminal for each dense id */
+    final AirportBase.TerminalBase[] terminals;
+    /* Waiting time of each terminal, indexed by id */
+    final int[] waits;
+    /* Start of each terminal's edge slots; offsets[size] is the edge count */
+    final int[] offsets;
+    /* Terminal id at the far end of each edge slot */
+    final int[] targets;
+    /* Shuttle travel time of each edge slot */
+    final int[] times;
+    /* Cost of each edge slot: travel time plus waiting at the source */
+    final int[] weights;
+    /* Shuttle that each edge slot was built from */
+    final AirportBase.ShuttleBase[] shuttles;
+    /* The other edge slot of the same shuttle, at the target terminal */
+    final int[] twins;
+    /* Airport version this snapshot was taken at */
+    final long version;
+
+    /* Registry from terminal to dense id */
+    private final Map<AirportBase.TerminalBase, Integer> ids;
+    /* Registry from terminal id string to dense id, or null until needed */
+    private volatile Map<String, Integer> names;
+
+    /**
+     * Builds a snapshot of the given terminals and their incident shuttles.
+     *
+     * @param adjacency incident shuttles of every terminal, in the order
+     *                  that dense ids should be assigned
+     * @param version airport version the adjacency lists belong to
+     */
+    AirportGraph(Map<? extends AirportBase.TerminalBase,
+            ? extends List<? extends AirportBase.ShuttleBase>> adjacency,
+            long version) {
+        this.version = version;
+        size = adjacency.size();
+        terminals = new AirportBase.TerminalBase[size];
+        waits = new int[size];
+        offsets = new int[size + 1];
+        ids = new HashMap<>(2 * size);
+
+        int id = 0;
+        for (Map.Entry<? extends AirportBase.TerminalBase,
+                ? extends List<? extends AirportBase.ShuttleBase>> entry
+                : adjacency.entrySet()) {
+            terminals[id] = entry.getKey();
+            waits[id] = entry.getKey().getWaitingTime();
+            ids.put(entry.getKey(), id);
+            offsets[id + 1] = offsets[id] + entry.getValue().size();
+            id++;
+        }
+
+        int edges = offsets[size];
+        targets = new int[edges];
+        times = new int[edges];
+        weights = new int[edges];
+        shuttles = new AirportBase.ShuttleBase[edges];
+        twins = new int[edges];
+        // First slot seen for each shuttle, until its twin turns up
+        Map<AirportBase.ShuttleBase, Integer> unpaired = new HashMap<>();
+
+        int slot = 0;
+        for (int u = 0; u < size; u++) {
+            for (AirportBase.ShuttleBase shuttle : adjacency.get(terminals[u])) {
+                AirportBase.TerminalBase other =
+                        shuttle.getOrigin() == terminals[u]
+                                ? shuttle.getDestination()
+                                : shuttle.getOrigin();
+                targets[slot] = ids.get(other);
+                times[slot] = shuttle.getTime();
+                weights[slot] = shuttle.getTime() + waits[u];
+                shuttles[slot] = shuttle;
+                Integer twin = unpaired.remove(shuttle);
+                if (twin == null) {
+                    unpaired.put(shuttle, slot);
+                } else {
+                    twins[slot] = twin;
+                    twins[twin] = slot;
+                }
+                slot++;
+            }
+        }
+    }
+
+    /**
+     * Wraps CSR arrays that were read from a snapshot file. The shuttles
+     * array is left empty; once shuttle objects are created for the
+     * snapshot, withShuttles makes a copy that holds them.
+     *
+     * @param terminals terminal for each dense id
+     * @param waits waiting time of each terminal
+     * @param offsets start of each terminal's edge slots
+     * @param targets far end of each edge slot
+     * @param times shuttle travel time of each edge slot
+     * @param twins other edge slot of the same shuttle
+     * @param version airport version the arrays belong to
+     */
+    AirportGraph(AirportBase.TerminalBase[] terminals, int[] waits,
+            int[] offsets, int[] targets, int[] times, int[] twins,
+            long version) {
+        this.version = version;
+        this.size = terminals.length;
+        this.terminals = terminals;
+        this.waits = waits;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.times = times;
+        this.twins = twins;
+        ids = new HashMap<>(2 * size);
+        for (int u = 0; u < size; u++)
+            ids.put(terminals[u], u);
+
+        int edges = offsets[size];
+        weights = new int[edges];
+        shuttles = new AirportBase.ShuttleBase[edges];
+        for (int u = 0; u < size; u++)
+            for (int e = offsets[u]; e < offsets[u + 1]; e++)
+                weights[e] = times[e] + waits[u];
+    }
+
+    /**
+     * Returns a snapshot of the same network and version whose shuttles
+     * array is the given one, sharing every other array with this one.
+     *
+     * @param shuttles shuttle of each edge slot
+     * @return snapshot with its shuttles filled in
+     */
+    AirportGraph withShuttles(AirportBase.ShuttleBase[] shuttles) {
+        return new AirportGraph(this, shuttles);
+    }
+
+    private AirportGraph(AirportGraph g, AirportBase.ShuttleBase[] shuttles) {
+        version = g.version;
+        size = g.size;
+        terminals = g.terminals;
+        waits = g.waits;
+        offsets = g.offsets;
+        targets = g.targets;
+        times = g.times;
+        weights = g.weights;
+        twins = g.twins;
+        ids = g.ids;
+        names = g.names;
+        this.shuttles = shuttles;
+    }
+
+    /**
+     * Returns the dense id of the terminal with the given id string. If
+     * several terminals share it, the one with the lowest dense id is
+     * returned.
+     *
+     * @param name id string of the terminal
+     * @return dense id of the terminal, or -1 if there is none
+     */
+    int idOf(String name) {
+        Map<String, Integer> index = names;
+        if (index == null) {
+            // Racing threads build equal maps, so either may win
+            index = new HashMap<>(2 * size);
+            for (int u = size - 1; u >= 0; u--)
+                index.put(terminals[u].getId(), u);
+            names = index;
+        }
+        Integer id = index.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the dense id of the given terminal.
+     *
+     * @param terminal terminal to look up
+     * @return id of the terminal, or -1 if it is not in the snapshot
+     */
+    int idOf(AirportBase.TerminalBase terminal) {
+        Integer id = ids.get(terminal);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the number of directed edge slots in the snapshot, which is
+     * twice the number of shuttles.
+     *
+     * @return number of edge slots
+     */
+    int edgeCount() {
+        return offsets[size];
+    }
+
+    /**
+     * Returns the cost of travelling edge slot e backwards, i.e. from its
+     * target to its source. Waiting happens at the departing terminal, so
+     * this is the slot's travel time plus the waiting time of its target.
+     *
+     * @param e edge slot
+     * @return cost of the reverse direction of the slot
+     */
+    int reverseWeight(int e) {
+        return times[e] + waits[targets[e]];
+    }
+
+    /**
+     * Returns the path with the lowest total travelling and waiting time
+     * from source to target, found by Dijkstra's algorithm. The search stops
+     * as soon as target is settled, so its cost depends on how far away the
+     * target is rather than on the size of the airport.
+     *
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @return path to target, or null if target is not reachable
+     */
+    AirportBase.Path fastestPath(int source, int target) {
+        Workspace.Side w = Workspace.get(size).forward;
+        IndexedHeap heap = w.heap;
+
+        w.reach(source, 0, -1);
+        heap.push(source, 0);
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            w.settle(u);
+            if (u == target)
+                return toPath(w.parent, target, w.dist[target]);
+
+            w.relaxed(offsets[u + 1] - offsets[u]);
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                if (w.settled(v))
+                    continue;
+                // An unsettled terminal is either unreached or in the heap,
+                // so push() both inserts and performs the decrease-key.
+                int alt = w.dist[u] + weights[e];
+                if (heap.push(v, alt))
+                    w.reach(v, alt, u);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the fastest travel time from source to every terminal, or to
+     * source from every terminal when reverse is set.
+     *
+     * @param source id of the terminal the search starts from
+     * @param reverse true to measure times into source rather than out of it
+     * @return time of each terminal id, or Integer.MAX_VALUE if unreachable
+     */
+    int[] distancesFrom(int source, boolean reverse) {
+        int[] dist = new int[size];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        boolean[] settled = new boolean[size];
+        IndexedHeap heap = new IndexedHeap(size);
+
+        dist[source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled[u] = true;
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                if (settled[v])
+                    continue;
+                int alt = dist[u] + (reverse ? reverseWeight(e) : weights[e]);
+                if (heap.push(v, alt))
+                    dist[v] = alt;
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Builds a Path by walking a predecessor chain back from target. The
+     * chain ends at the terminal whose parent is -1.
+     *
+     * @param parent predecessor of each terminal id
+     * @param target id of the last terminal on the path
+     * @param time total time of the path
+     * @return path from the root of the chain to target
+     */
+    AirportBase.Path toPath(int[] parent, int target, int time) {
+        return toPath(parent, target, null, time);
+    }
+
+    /**
+     * Builds a Path that meets in the middle: the forward predecessor chain
+     * from the origin to meet, followed by the backward successor chain from
+     * meet to the destination.
+     *
+     * @param parent predecessor of each terminal id, ending in -1
+     * @param meet id of the terminal where the two chains join
+     * @param next successor of each terminal id, ending in -1, or null if
+     *             meet is the destination
+     * @param time total time of the path
+     * @return path from the root of parent to the root of next
+     */
+    AirportBase.Path toPath(int[] parent, int meet, int[] next, int time) {
+        List<AirportBase.TerminalBase> route = new ArrayList<>();
+        for (int v = meet; v != -1; v = parent[v])
+            route.add(terminals[v]);
+        Collections.reverse(route);
+        if (next != null)
+            for (int v = next[meet]; v != -1; v = next[v])
+                route.add(terminals[v]);
+        return new AirportBase.Path(route, time);
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers many fastest-path queries at once by grouping them by origin.
+ *
+ * One Dijkstra search is run per distinct origin, and it stops once every
+ * destination requested from that origin has been settled. All paths from
+ * that origin are then read off the same predecessor tree. Origins are
+ * spread across a ForkJoinPool, with each worker reusing its own scratch
+ * arrays between searches.
+ */
+final class BatchRouter {
+
+    private static final int INF = Integer.MAX_VALUE;
+    /* Origins handled by one leaf task */
+    private static final int BATCH = 8;
+
+    private final AirportGraph graph;
+    private final int[] sources;
+    private final int[] targets;
+    private final AirportBase.Path[] results;
+    /* Query indexes sorted by source, and where each origin's run starts */
+    private final int[] order;
+    private final int[] groupStarts;
+
+    private BatchRouter(AirportGraph graph, int[] sources, int[] targets) {
+        this.graph = graph;
+        this.sources = sources;
+        this.targets = targets;
+        this.results = new AirportBase.Path[sources.length];
+
+        // Counting sort of the valid queries by source id
+        int n = graph.size;
+        int[] counts = new int[n + 1];
+        int valid = 0;
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] >= 0 && targets[i] >= 0) {
+                counts[sources[i] + 1]++;
+                valid++;
+            }
+        }
+        int groups = 0;
+        for (int v = 0; v < n; v++) {
+            if (counts[v + 1] > 0)
+                groups++;
+            counts[v + 1] += counts[v];
+        }
+        order = new int[valid];
+        for (int i = 0; i < sources.length; i++)
+            if (sources[i] >= 0 && targets[i] >= 0)
+                order[counts[sources[i]]++] = i;
+
+        groupStarts = new int[groups + 1];
+        int g = 0;
+        for (int k = 0; k < valid; k++)
+            if (k == 0 || sources[order[k]] != sources[order[k - 1]])
+                groupStarts[g++] = k;
+        groupStarts[groups] = valid;
+    }
+
+    /**
+     * Returns the fastest path for every (sources[i], targets[i]) pair.
+     * Pairs with an id of -1 get a null result.
+     *
+     * @param graph network snapshot
+     * @param sources id of the starting terminal of each query
+     * @param targets id of the destination terminal of each query
+     * @param pool pool to run the per-origin searches on
+     * @return path of each query, or null where the destination is not
+     * reachable
+     */
+    static AirportBase.Path[] fastestPaths(AirportGraph graph, int[] sources,
+            int[] targets, ForkJoinPool pool) {
+        BatchRouter router = new BatchRouter(graph, sources, targets);
+        int groups = router.groupStarts.length - 1;
+        if (groups > 0)
+            pool.invoke(router.new Groups(0, groups));
+        return router.results;
+    }
+
+    private final class Groups extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Groups(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Groups(from, mid), new Groups(mid, to));
+                return;
+            }
+
+            int n = graph.size;
+            int[] dist = new int[n];
+            int[] parent = new int[n];
+            boolean[] settled = new boolean[n];
+            boolean[] wanted = new boolean[n];
+            IndexedHeap heap = new IndexedHeap(n);
+            for (int group = from; group < to; group++)
+                search(group, dist, parent, settled, wanted, heap);
+        }
+
+        private void search(int group, int[] dist, int[] parent,
+                boolean[] settled, boolean[] wanted, IndexedHeap heap) {
+            int start = groupStarts[group];
+            int end = groupStarts[group + 1];
+            int source = sources[order[start]];
+
+            Arrays.fill(dist, INF);
+            Arrays.fill(settled, false);
+            int remaining = 0;
+            for (int k = start; k < end; k++) {
+                int t = targets[order[k]];
+                if (!wanted[t]) {
+                    wanted[t] = true;
+                    remaining++;
+                }
+            }
+
+            dist[source] = 0;
+            parent[source] = -1;
+            heap.push(source, 0);
+            while (!heap.isEmpty() && remaining > 0) {
+                int u = heap.poll();
+                settled[u] = true;
+                if (wanted[u])
+                    remaining--;
+                for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                    int v = graph.targets[e];
+                    if (settled[v])
+                        continue;
+                    int alt = dist[u] + graph.weights[e];
+                    if (heap.push(v, alt)) {
+                        dist[v] = alt;
+                        parent[v] = u;
+                    }
+                }
+            }
+            heap.clear();
+
+            for (int k = start; k < end; k++) {
+                int t = targets[order[k]];
+                wanted[t] = false;
+                if (settled[t])
+                    results[order[k]] = graph.toPath(parent, t, dist[t]);
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Point-to-point searches that grow one tree forward from the origin and one
+ * backward from the destination until they meet.
+ *
+ * Shuttles are bidirectional but their cost is not symmetric, since waiting
+ * happens at the departing terminal. The backward tree therefore relaxes
+ * each edge slot with AirportGraph.reverseWeight, which is the cost of the
+ * forward journey along that shuttle into the terminal being scanned.
+ */
+final class BidirectionalSearch {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    private BidirectionalSearch() {}
+
+    /**
+     * Returns a path with the fewest shuttles from source to target. Each
+     * step expands one full BFS level of whichever side has the smaller
+     * frontier. The first terminal reached by both sides lies on a path with
+     * the minimum number of hops, because the two balls first intersect when
+     * their radii add up to that minimum.
+     *
+     * @param g network snapshot
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @return path to target, or null if target is not reachable
+     */
+    static AirportBase.Path shortestPath(AirportGraph g, int source,
+            int target) {
+        Workspace w = Workspace.get(g.size);
+        Workspace.Side sideF = w.forward;
+        Workspace.Side sideB = w.backward;
+
+        // A terminal's hop count is final as soon as it is reached
+        sideF.reach(source, 0, -1);
+        sideF.settle(source);
+        sideB.reach(target, 0, -1);
+        sideB.settle(target);
+        if (source == target)
+            return g.toPath(sideF.parent, source, 0);
+
+        int headF = 0;
+        int tailF = 0;
+        int headB = 0;
+        int tailB = 0;
+        sideF.queue[tailF++] = source;
+        sideB.queue[tailB++] = target;
+
+        while (headF < tailF && headB < tailB) {
+            boolean forward = tailF - headF <= tailB - headB;
+            Workspace.Side side = forward ? sideF : sideB;
+            Workspace.Side other = forward ? sideB : sideF;
+            int[] queue = side.queue;
+            int head = forward ? headF : headB;
+            int tail = forward ? tailF : tailB;
+            int end = tail;
+
+            for (; head < end; head++) {
+                int u = queue[head];
+                for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                    int v = g.targets[e];
+                    if (side.reached(v))
+                        continue;
+                    side.reach(v, side.dist[u]
+                            + (forward ? g.weights[e] : g.reverseWeight(e)), u);
+                    side.settle(v);
+                    queue[tail++] = v;
+                    if (other.reached(v)) {
+                        side.relaxed(e - g.offsets[u] + 1);
+                        return g.toPath(sideF.parent, v, sideB.parent,
+                                sideF.dist[v] + sideB.dist[v]);
+                    }
+                }
+                side.relaxed(g.offsets[u + 1] - g.offsets[u]);
+            }
+
+            if (forward) {
+                headF = head;
+                tailF = tail;
+            } else {
+                headB = head;
+                tailB = tail;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the path with the lowest total travelling and waiting time
+     * from source to target using bidirectional Dijkstra. The side with the
+     * smaller heap is advanced each step; mu tracks the best path through a
+     * terminal reached by both sides, and the search stops once the two heap
+     * minima together can no longer beat it.
+     *
+     * @param g network snapshot
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @return path to target, or null if target is not reachable
+     */
+    static AirportBase.Path fastestPath(AirportGraph g, int source,
+            int target) {
+        Workspace w = Workspace.get(g.size);
+        Workspace.Side sideF = w.forward;
+        Workspace.Side sideB = w.backward;
+
+        sideF.reach(source, 0, -1);
+        sideB.reach(target, 0, -1);
+        sideF.heap.push(source, 0);
+        sideB.heap.push(target, 0);
+
+        int mu = source == target ? 0 : INF;
+        int meet = source == target ? source : -1;
+
+        while (!sideF.heap.isEmpty() && !sideB.heap.isEmpty()
+                && (long) sideF.heap.minKey() + sideB.heap.minKey() < mu) {
+            boolean forward = sideF.heap.size() <= sideB.heap.size();
+            Workspace.Side side = forward ? sideF : sideB;
+            Workspace.Side other = forward ? sideB : sideF;
+            IndexedHeap heap = side.heap;
+
+            int u = heap.poll();
+            side.settle(u);
+            side.relaxed(g.offsets[u + 1] - g.offsets[u]);
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                int v = g.targets[e];
+                if (side.settled(v))
+                    continue;
+                int alt = side.dist[u]
+                        + (forward ? g.weights[e] : g.reverseWeight(e));
+                if (heap.push(v, alt)) {
+                    side.reach(v, alt, u);
+                    int rest = other.distance(v);
+                    if (rest != INF && (long) alt + rest < mu) {
+                        mu = alt + rest;
+                        meet = v;
+                    }
+                }
+            }
+        }
+
+        if (meet < 0)
+            return null;
+        return g.toPath(sideF.parent, meet, sideB.parent,
+                sideF.dist[meet] + sideB.dist[meet]);
+    }
+}
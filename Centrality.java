@@ -0,0 +1,230 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Betweenness, closeness and eccentricity of every terminal, measured by
+ * fastest travel time including waiting, indexed by the dense ids of the
+ * snapshot they were computed on.
+ *
+ * Betweenness follows Brandes: one Dijkstra search per origin finds the
+ * fastest times, the fastest paths to every terminal are counted along
+ * the arcs that lie on them in topological order, and the terminals are
+ * then revisited in reverse of that order to accumulate each one's share
+ * of the paths passing through it. Counting in settling order instead
+ * would miss paths along zero-time arcs, which a shuttle with no travel
+ * time boarded without waiting has. If such arcs form a round trip, there
+ * are infinitely many fastest paths, and the measures are not computed.
+ *
+ * Travel times are not symmetric, since the wait is paid where a shuttle
+ * is boarded, so all ordered pairs are counted. Origins are spread across
+ * a ForkJoinPool; each leaf task reuses its scratch arrays between
+ * origins and sums its betweenness locally before adding it to the shared
+ * totals.
+ */
+final class Centrality {
+
+    private static final int INF = Integer.MAX_VALUE;
+    /* Origins handled by one leaf task */
+    private static final int BATCH = 8;
+
+    /* Snapshot the measures were computed on */
+    final AirportGraph graph;
+    /* Sum over ordered pairs of the share of fastest paths through each */
+    final double[] betweenness;
+    /*
+     * Reach-scaled closeness of each terminal as an origin: with r other
+     * terminals reachable in total time T, (r / (n - 1)) * (r / T), or 0
+     * if none is reachable. T is taken as at least one minute, so that
+     * terminals all reachable in no time score highest instead of infinity
+     */
+    final double[] closeness;
+    /* Longest fastest time from each terminal to any it can reach */
+    final int[] eccentricity;
+    /* Largest eccentricity */
+    final int diameter;
+
+    /**
+     * Computes all measures for the snapshot.
+     *
+     * @param graph network snapshot
+     * @param pool pool to run the per-origin searches on
+     * @throws IllegalArgumentException if the network has a round trip
+     * that takes no time
+     */
+    Centrality(AirportGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        betweenness = new double[graph.size];
+        closeness = new double[graph.size];
+        eccentricity = new int[graph.size];
+        if (graph.size > 0)
+            pool.invoke(new Sources(0, graph.size));
+        int max = 0;
+        for (int e : eccentricity)
+            max = Math.max(max, e);
+        diameter = max;
+    }
+
+    /**
+     * Returns the number of terminals covered by the arrays.
+     *
+     * @return number of terminals
+     */
+    int size() {
+        return graph.size;
+    }
+
+    /**
+     * Returns the index of the given terminal in the arrays.
+     *
+     * @param terminal terminal to look up
+     * @return id of the terminal, or -1 if it was not in the airport
+     */
+    int idOf(AirportBase.TerminalBase terminal) {
+        return graph.idOf(terminal);
+    }
+
+    AirportBase.TerminalBase terminal(int id) {
+        return graph.terminals[id];
+    }
+
+    @Override
+    public String toString() {
+        int hub = -1;
+        for (int v = 0; v < graph.size; v++)
+            if (hub < 0 || betweenness[v] > betweenness[hub])
+                hub = v;
+        return "Centrality{terminals=" + graph.size + ", diameter=" + diameter
+                + (hub < 0 ? "" : ", topHub=" + graph.terminals[hub]) + "}";
+    }
+
+    private final class Sources extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Sources(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Sources(from, mid), new Sources(mid, to));
+                return;
+            }
+
+            int n = graph.size;
+            int[] dist = new int[n];
+            // Position of each terminal in settling order, -1 if unsettled
+            int[] rank = new int[n];
+            int[] order = new int[n];
+            // Fastest-path predecessors of each terminal not yet counted
+            int[] pending = new int[n];
+            double[] paths = new double[n];
+            double[] dependency = new double[n];
+            double[] local = new double[n];
+            IndexedHeap heap = new IndexedHeap(n);
+            for (int source = from; source < to; source++)
+                search(source, dist, rank, order, pending, paths, dependency,
+                        local, heap);
+            synchronized (betweenness) {
+                for (int v = 0; v < n; v++)
+                    betweenness[v] += local[v];
+            }
+        }
+
+        private void search(int source, int[] dist, int[] rank, int[] order,
+                int[] pending, double[] paths, double[] dependency,
+                double[] local, IndexedHeap heap) {
+            AirportGraph g = graph;
+            Arrays.fill(dist, INF);
+            Arrays.fill(rank, -1);
+
+            // Settle in time order to find every reachable terminal's time
+            int settled = 0;
+            long total = 0;
+            dist[source] = 0;
+            heap.push(source, 0);
+            while (!heap.isEmpty()) {
+                int w = heap.poll();
+                rank[w] = settled;
+                order[settled++] = w;
+                total += dist[w];
+                for (int e = g.offsets[w]; e < g.offsets[w + 1]; e++) {
+                    int v = g.targets[e];
+                    if (rank[v] >= 0)
+                        continue;
+                    int alt = dist[w] + g.weights[e];
+                    if (heap.push(v, alt))
+                        dist[v] = alt;
+                }
+            }
+
+            // The last terminal settled is the farthest, before order is
+            // reused below
+            eccentricity[source] = dist[order[settled - 1]];
+
+            // Count the fastest paths in topological order of the arcs that
+            // lie on them. Settling order is not enough: a zero-time arc can
+            // join two terminals at the same time in either order.
+            for (int i = 0; i < settled; i++) {
+                int w = order[i];
+                int predecessors = 0;
+                for (int e = g.offsets[w]; e < g.offsets[w + 1]; e++) {
+                    int v = g.targets[e];
+                    if (v != w && rank[v] >= 0
+                            && dist[v] + g.reverseWeight(e) == dist[w])
+                        predecessors++;
+                }
+                pending[w] = predecessors;
+                paths[w] = 0;
+                dependency[w] = 0;
+            }
+            paths[source] = 1;
+            int head = 0;
+            int tail = 0;
+            if (pending[source] == 0)
+                order[tail++] = source;
+            while (head < tail) {
+                int w = order[head];
+                rank[w] = head++;
+                for (int e = g.offsets[w]; e < g.offsets[w + 1]; e++) {
+                    int v = g.targets[e];
+                    if (v == w || rank[v] < 0
+                            || dist[w] + g.weights[e] != dist[v])
+                        continue;
+                    paths[v] += paths[w];
+                    if (--pending[v] == 0)
+                        order[tail++] = v;
+                }
+            }
+            if (tail < settled)
+                throw new IllegalArgumentException("Fastest paths from "
+                        + g.terminals[source] + " cannot be counted: the "
+                        + "network has a round trip that takes no time");
+
+            int reached = settled - 1;
+            closeness[source] = reached == 0 ? 0
+                    : (double) reached / (g.size - 1) * reached
+                            / Math.max(total, 1);
+
+            // Pass dependencies back down the shortest-path DAG
+            for (int i = settled - 1; i > 0; i--) {
+                int w = order[i];
+                double share = (1 + dependency[w]) / paths[w];
+                for (int e = g.offsets[w]; e < g.offsets[w + 1]; e++) {
+                    int v = g.targets[e];
+                    if (rank[v] >= 0 && rank[v] < i
+                            && dist[v] + g.reverseWeight(e) == dist[w])
+                        dependency[v] += paths[v] * share;
+                }
+                local[w] += dependency[w];
+            }
+        }
+    }
+}
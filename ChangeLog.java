@@ -0,0 +1,184 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bounded, in-memory record of the mutations of an airport, each tagged
+ * with a sequence number, so that caches and displays can catch up on what
+ * changed instead of rereading the whole network.
+ *
+ * Changes are kept in a ring buffer holding the most recent ones. Only one
+ * thread appends at a time (the airport appends under its write lock), and
+ * the new change is published through the volatile sequence counter, so
+ * readers never lock. A reader that falls so far behind that the changes
+ * it wants have been overwritten is told so and must start again from a
+ * checkpoint.
+ */
+final class ChangeLog {
+
+    /**
+     * Kinds of mutation recorded in the log.
+     */
+    enum Kind {
+        TERMINAL_INSERTED,
+        SHUTTLE_INSERTED,
+        SHUTTLE_REMOVED,
+        /* Also removes the terminal's shuttles, which are not logged apart */
+        TERMINAL_REMOVED,
+        /* New departure times of a shuttle from one of its terminals */
+        DEPARTURES_SET
+    }
+
+    /**
+     * One mutation. Terminal changes carry the terminal and shuttle changes
+     * the shuttle, whose origin, destination and time describe it fully.
+     * Schedule changes carry the shuttle, the terminal it departs from and
+     * the sorted departure times, which must not be modified.
+     */
+    static final class Change {
+
+        final long sequence;
+        final Kind kind;
+        final AirportBase.TerminalBase terminal;
+        final AirportBase.ShuttleBase shuttle;
+        /* Departure times in minutes after midnight, or null */
+        final int[] departures;
+
+        Change(long sequence, Kind kind, AirportBase.TerminalBase terminal,
+                AirportBase.ShuttleBase shuttle, int[] departures) {
+            this.sequence = sequence;
+            this.kind = kind;
+            this.terminal = terminal;
+            this.shuttle = shuttle;
+            this.departures = departures;
+        }
+
+        @Override
+        public String toString() {
+            if (kind == Kind.DEPARTURES_SET)
+                return "Change{" + sequence + " " + kind + " " + shuttle
+                        + " from " + terminal + " "
+                        + Arrays.toString(departures) + "}";
+            return "Change{" + sequence + " " + kind + " "
+                    + (terminal != null ? terminal : shuttle) + "}";
+        }
+    }
+
+    /**
+     * The state of an airport as terminal and shuttle insertions and
+     * schedules only, and the sequence number of the first change not
+     * reflected in it. Replaying the changes and then reading the log from
+     * sequence brings a copy fully up to date.
+     *
+     * The compacted changes are not in the log, so they are numbered apart,
+     * from 0 in the order they must be applied; a reader that stops partway
+     * can resume from the number of the first change it has not applied.
+     */
+    static final class Checkpoint {
+
+        final long sequence;
+        final List<Change> changes;
+
+        Checkpoint(long sequence, List<Change> changes) {
+            this.sequence = sequence;
+            this.changes = changes;
+        }
+    }
+
+    private final Change[] ring;
+    private final int mask;
+    /* Sequence number of the first change appended to this log */
+    private final long first;
+    /* Sequence number the next change will get */
+    private volatile long next;
+
+    /**
+     * Creates an empty log holding at least the given number of changes.
+     *
+     * @param capacity minimum number of changes retained, rounded up to a
+     *                 power of two
+     * @param next sequence number of the first change to be appended
+     */
+    ChangeLog(int capacity, long next) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Change log capacity must be "
+                    + "between 1 and 2^30: " + capacity);
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+            size <<= 1;
+        ring = new Change[size];
+        mask = size - 1;
+        first = next;
+        this.next = next;
+    }
+
+    /**
+     * Records a change, overwriting the oldest one if the log is full. Must
+     * not be called by two threads at once.
+     *
+     * @param kind kind of mutation
+     * @param terminal terminal inserted or removed, or departed from, or
+     *                 null
+     * @param shuttle shuttle inserted, removed or rescheduled, or null
+     * @param departures new sorted departure times, or null
+     */
+    void append(Kind kind, AirportBase.TerminalBase terminal,
+            AirportBase.ShuttleBase shuttle, int[] departures) {
+        long sequence = next;
+        ring[(int) sequence & mask] = new Change(sequence, kind, terminal,
+                shuttle, departures);
+        next = sequence + 1;
+    }
+
+    /**
+     * Returns the sequence number the next change will get, which is also
+     * the number of changes ever appended.
+     *
+     * @return next sequence number
+     */
+    long next() {
+        return next;
+    }
+
+    /**
+     * Returns the oldest sequence number still in the log.
+     *
+     * @return sequence number of the oldest retained change, or next() if
+     * the log is empty
+     */
+    long oldest() {
+        return Math.max(first, next - ring.length);
+    }
+
+    /**
+     * Returns up to max changes starting at sequence number from.
+     *
+     * @param from sequence number of the first change wanted
+     * @param max maximum number of changes to return
+     * @return changes in sequence order, empty if from is next()
+     * @throws IllegalArgumentException if from is in the future, or if
+     * changes from it on are no longer retained
+     */
+    List<Change> read(long from, int max) {
+        long end = next;
+        if (from > end || max < 0)
+            throw new IllegalArgumentException("Cannot read " + max
+                    + " changes from " + from + ", next is " + end);
+        if (from < oldest())
+            throw new IllegalArgumentException("Change " + from
+                    + " is no longer in the log; start again from a "
+                    + "checkpoint");
+        end = Math.min(end, from + max);
+        List<Change> batch = new ArrayList<>((int) (end - from));
+        for (long s = from; s < end; s++) {
+            Change change = ring[(int) s & mask];
+            // A newer sequence number means the slot was reused meanwhile
+            if (change == null || change.sequence != s)
+                throw new IllegalArgumentException("Change " + s
+                        + " is no longer in the log; start again from a "
+                        + "checkpoint");
+            batch.add(change);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Which terminals are connected to which, kept up to date as the network
+ * changes so that unreachable pairs can be rejected without a search.
+ *
+ * Inserting terminals and shuttles only ever merges components, which a
+ * union-find forest absorbs in logarithmic time. Removals can split a
+ * component, which union-find cannot undo, so a removal just marks the
+ * index stale and it is rebuilt from the next snapshot that needs it.
+ * Insertions are still applied to a stale index, so that until then it
+ * only ever overstates connectivity, never understates it.
+ *
+ * Updates come from the airport's writers, one at a time; queries take no
+ * lock. The forest is linked by size and never compressed, so a parent
+ * pointer changes at most once, from the terminal itself to its new root,
+ * and a reader racing a union still walks up to a root. If the two roots
+ * it finds differ, it checks that the first is still a root, and looks
+ * again if a union has just merged it away.
+ */
+final class ConnectivityIndex {
+
+    /**
+     * One generation of the forest; rebuilding publishes a new one.
+     */
+    private static final class Forest {
+
+        /* Dense index of each terminal in the forest */
+        final ConcurrentHashMap<AirportBase.TerminalBase, Integer> ids =
+                new ConcurrentHashMap<>();
+        /* Parent of each index, or the index itself for a root */
+        volatile AtomicIntegerArray parent = new AtomicIntegerArray(16);
+        /* Number of indexes under each root; only writers read it */
+        int[] weight = new int[16];
+        int size;
+    }
+
+    private volatile Forest forest = new Forest();
+    /* Set when a removal may have split a component */
+    private volatile boolean stale;
+
+    /**
+     * Returns whether the index must be rebuilt before it can be queried
+     * exactly.
+     *
+     * @return true if a terminal or shuttle was removed since the last
+     * rebuild
+     */
+    boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Records that a terminal or shuttle was removed. Called by writers.
+     */
+    void markStale() {
+        stale = true;
+    }
+
+    /**
+     * Adds a terminal as a component of its own. Called by writers.
+     *
+     * @param terminal inserted terminal
+     */
+    void terminalInserted(AirportBase.TerminalBase terminal) {
+        add(forest, terminal);
+    }
+
+    /**
+     * Merges the components of a new shuttle's two terminals. Called by
+     * writers.
+     *
+     * @param shuttle inserted shuttle
+     */
+    void shuttleInserted(AirportBase.ShuttleBase shuttle) {
+        Forest f = forest;
+        Integer a = f.ids.get(shuttle.getOrigin());
+        Integer b = f.ids.get(shuttle.getDestination());
+        if (a != null && b != null)
+            union(f, a, b);
+    }
+
+    /**
+     * Recomputes the components from a snapshot of the whole network and
+     * publishes them. The caller must make sure no writer runs during the
+     * rebuild, so that the snapshot is current; concurrent rebuilds are
+     * serialized here.
+     *
+     * @param g snapshot of the current network
+     */
+    synchronized void rebuild(AirportGraph g) {
+        if (!stale)
+            return;
+        Forest f = new Forest();
+        for (int u = 0; u < g.size; u++)
+            add(f, g.terminals[u]);
+        // Ids match the snapshot's, and each shuttle has a slot at both ends
+        for (int u = 0; u < g.size; u++)
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++)
+                if (u < g.targets[e])
+                    union(f, u, g.targets[e]);
+        forest = f;
+        stale = false;
+    }
+
+    /**
+     * Returns whether a path between the two terminals exists, without
+     * locking. A stale index may report pairs as connected that no longer
+     * are.
+     *
+     * @param a a terminal
+     * @param b another terminal
+     * @return true if both are in the airport and in the same component
+     */
+    boolean connected(AirportBase.TerminalBase a, AirportBase.TerminalBase b) {
+        Forest f = forest;
+        Integer x = f.ids.get(a);
+        Integer y = f.ids.get(b);
+        if (x == null || y == null)
+            return false;
+        while (true) {
+            AtomicIntegerArray parent = f.parent;
+            int rx = find(parent, x);
+            int ry = find(parent, y);
+            if (rx == ry)
+                return true;
+            if (parent.get(rx) == rx && f.parent == parent)
+                return false;
+        }
+    }
+
+    private static int find(AtomicIntegerArray parent, int x) {
+        int p;
+        while ((p = parent.get(x)) != x)
+            x = p;
+        return x;
+    }
+
+    /**
+     * Adds a terminal to a forest, growing its arrays if needed. Readers
+     * only learn the terminal's index after the arrays hold it.
+     */
+    private static void add(Forest f, AirportBase.TerminalBase terminal) {
+        if (f.ids.containsKey(terminal))
+            return;
+        int index = f.size;
+        AtomicIntegerArray parent = f.parent;
+        if (index == parent.length()) {
+            AtomicIntegerArray grown = new AtomicIntegerArray(2 * index);
+            for (int i = 0; i < index; i++)
+                grown.set(i, parent.get(i));
+            f.weight = Arrays.copyOf(f.weight, 2 * index);
+            f.parent = parent = grown;
+        }
+        parent.set(index, index);
+        f.weight[index] = 1;
+        f.size++;
+        f.ids.put(terminal, index);
+    }
+
+    private static void union(Forest f, int a, int b) {
+        AtomicIntegerArray parent = f.parent;
+        int x = find(parent, a);
+        int y = find(parent, b);
+        if (x == y)
+            return;
+        if (f.weight[x] < f.weight[y]) {
+            int swap = x;
+            x = y;
+            y = swap;
+        }
+        f.weight[x] += f.weight[y];
+        parent.set(y, x);
+    }
+}
@@ -0,0 +1,419 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A contraction hierarchy over a network snapshot, for answering many
+ * fastest-path queries on a network that rarely changes.
+ *
+ * Terminals are contracted one at a time in order of increasing importance.
+ * Contracting v adds a shortcut u -> w for every pair of remaining
+ * neighbours whose only fastest connection runs through v. Edge costs are
+ * directed (travel time plus waiting at the departing terminal), so in- and
+ * out-neighbours are handled separately. A query then only needs to search
+ * upwards in rank from both ends, and shortcuts are unpacked back into the
+ * terminals they skip over.
+ */
+final class ContractionHierarchy {
+
+    private static final int INF = Integer.MAX_VALUE;
+    /* Maximum number of terminals settled by one witness search */
+    private static final int WITNESS_LIMIT = 100;
+
+    /* Snapshot the hierarchy was built on */
+    final AirportGraph graph;
+    /* Position of each terminal in the contraction order */
+    final int[] rank;
+
+    /* Edges of the hierarchy, original and shortcut, indexed by edge id */
+    private int[] edgeSource;
+    private int[] edgeTarget;
+    private int[] edgeWeight;
+    /* Child edges a shortcut replaces, or -1 for an original edge */
+    private int[] edgeFirst;
+    private int[] edgeSecond;
+    private int edgeCount;
+
+    /* Upward forward graph: edges u -> w with rank[w] > rank[u], at u */
+    private final int[] upOffsets;
+    private final int[] upEdges;
+    /* Upward backward graph: edges u -> w with rank[u] > rank[w], at w */
+    private final int[] downOffsets;
+    private final int[] downEdges;
+
+    /* Contraction state, released once the hierarchy is built */
+    private IntList[] out;
+    private IntList[] in;
+    private boolean[] contracted;
+    private int[] witnessDist;
+    private IndexedHeap witnessHeap;
+    private IntList witnessTouched;
+
+    /**
+     * Contracts every terminal of the given snapshot.
+     *
+     * @param graph network snapshot
+     */
+    ContractionHierarchy(AirportGraph graph) {
+        this.graph = graph;
+        int n = graph.size;
+        rank = new int[n];
+
+        int initial = Math.max(1, graph.edgeCount());
+        edgeSource = new int[initial];
+        edgeTarget = new int[initial];
+        edgeWeight = new int[initial];
+        edgeFirst = new int[initial];
+        edgeSecond = new int[initial];
+
+        out = new IntList[n];
+        in = new IntList[n];
+        for (int v = 0; v < n; v++) {
+            out[v] = new IntList(4);
+            in[v] = new IntList(4);
+        }
+        for (int u = 0; u < n; u++)
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++)
+                if (graph.targets[e] != u)
+                    addEdge(u, graph.targets[e], graph.weights[e], -1, -1);
+
+        contracted = new boolean[n];
+        witnessDist = new int[n];
+        Arrays.fill(witnessDist, INF);
+        witnessHeap = new IndexedHeap(n);
+        witnessTouched = new IntList();
+        contractAll();
+
+        upOffsets = new int[n + 1];
+        downOffsets = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            if (rank[edgeTarget[e]] > rank[edgeSource[e]])
+                upOffsets[edgeSource[e] + 1]++;
+            else
+                downOffsets[edgeTarget[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            upOffsets[v + 1] += upOffsets[v];
+            downOffsets[v + 1] += downOffsets[v];
+        }
+        upEdges = new int[upOffsets[n]];
+        downEdges = new int[downOffsets[n]];
+        int[] upFill = Arrays.copyOf(upOffsets, n);
+        int[] downFill = Arrays.copyOf(downOffsets, n);
+        for (int e = 0; e < edgeCount; e++) {
+            if (rank[edgeTarget[e]] > rank[edgeSource[e]])
+                upEdges[upFill[edgeSource[e]]++] = e;
+            else
+                downEdges[downFill[edgeTarget[e]]++] = e;
+        }
+
+        out = null;
+        in = null;
+        contracted = null;
+        witnessDist = null;
+        witnessHeap = null;
+        witnessTouched = null;
+    }
+
+    /**
+     * Returns the number of shortcut edges added by contraction.
+     *
+     * @return number of shortcuts
+     */
+    int shortcutCount() {
+        int count = 0;
+        for (int e = 0; e < edgeCount; e++)
+            if (edgeFirst[e] >= 0)
+                count++;
+        return count;
+    }
+
+    /**
+     * Returns the fastest path from source to target with a bidirectional
+     * search that only follows edges towards higher-ranked terminals. Each
+     * side stops once its smallest tentative time cannot improve on the
+     * best meeting found so far.
+     *
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @return path to target, or null if target is not reachable
+     */
+    AirportBase.Path fastestPath(int source, int target) {
+        Workspace w = Workspace.get(graph.size);
+        Workspace.Side sideF = w.forward;
+        Workspace.Side sideB = w.backward;
+        IndexedHeap heapF = sideF.heap;
+        IndexedHeap heapB = sideB.heap;
+
+        sideF.reach(source, 0, -1);
+        sideB.reach(target, 0, -1);
+        heapF.push(source, 0);
+        heapB.push(target, 0);
+
+        int mu = INF;
+        int meet = -1;
+        while (!heapF.isEmpty() || !heapB.isEmpty()) {
+            boolean forward = !heapF.isEmpty()
+                    && (heapB.isEmpty() || heapF.minKey() <= heapB.minKey());
+            Workspace.Side side = forward ? sideF : sideB;
+            Workspace.Side other = forward ? sideB : sideF;
+            IndexedHeap heap = side.heap;
+            if (heap.minKey() >= mu) {
+                heap.clear();
+                continue;
+            }
+
+            int[] offsets = forward ? upOffsets : downOffsets;
+            int[] edges = forward ? upEdges : downEdges;
+            int[] ends = forward ? edgeTarget : edgeSource;
+
+            int u = heap.poll();
+            side.settle(u);
+            side.relaxed(offsets[u + 1] - offsets[u]);
+            int rest = other.distance(u);
+            if (rest != INF && side.dist[u] + rest < mu) {
+                mu = side.dist[u] + rest;
+                meet = u;
+            }
+            for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+                int e = edges[i];
+                int v = ends[e];
+                int alt = side.dist[u] + edgeWeight[e];
+                if (alt < side.distance(v) && heap.push(v, alt))
+                    side.reach(v, alt, e);
+            }
+        }
+
+        if (meet < 0)
+            return null;
+
+        // Parents hold the edge used to reach each terminal, -1 at the ends
+        int[] edgeF = sideF.parent;
+        int[] edgeB = sideB.parent;
+        List<AirportBase.TerminalBase> route = new ArrayList<>();
+        IntList chain = w.chain;
+        for (int v = meet; edgeF[v] >= 0; v = edgeSource[edgeF[v]])
+            chain.add(edgeF[v]);
+        route.add(graph.terminals[source]);
+        while (!chain.isEmpty())
+            unpack(chain.pop(), w.stack, route);
+        for (int v = meet; edgeB[v] >= 0; v = edgeTarget[edgeB[v]])
+            unpack(edgeB[v], w.stack, route);
+
+        return new AirportBase.Path(route, sideF.dist[meet] + sideB.dist[meet]);
+    }
+
+    /**
+     * Appends the terminals reached along the given edge to route, expanding
+     * shortcuts into the original edges they stand for. The edge's source is
+     * assumed to already be on the route.
+     *
+     * @param edge edge to unpack
+     * @param stack scratch stack, empty on entry and on exit
+     * @param route list of terminals to append to
+     */
+    private void unpack(int edge, IntList stack,
+            List<AirportBase.TerminalBase> route) {
+        stack.add(edge);
+        while (!stack.isEmpty()) {
+            int e = stack.pop();
+            if (edgeFirst[e] < 0) {
+                route.add(graph.terminals[edgeTarget[e]]);
+            } else {
+                stack.add(edgeSecond[e]);
+                stack.add(edgeFirst[e]);
+            }
+        }
+    }
+
+    /**
+     * Contracts terminals in order of edge difference, the number of
+     * shortcuts contraction would add minus the edges it removes, plus the
+     * number of already contracted neighbours to spread contraction evenly.
+     * Priorities are re-evaluated lazily when a terminal reaches the top.
+     */
+    private void contractAll() {
+        int n = graph.size;
+        int[] deleted = new int[n];
+        IndexedHeap queue = new IndexedHeap(n);
+        for (int v = 0; v < n; v++)
+            queue.push(v, priority(v, deleted));
+
+        int order = 0;
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            int p = priority(v, deleted);
+            if (!queue.isEmpty() && p > queue.minKey()) {
+                queue.push(v, p);
+                continue;
+            }
+
+            contract(v, true);
+            contracted[v] = true;
+            rank[v] = order++;
+            for (int i = 0; i < out[v].size(); i++) {
+                int w = edgeTarget[out[v].get(i)];
+                deleted[w]++;
+                prune(in[w], edgeSource);
+            }
+            for (int i = 0; i < in[v].size(); i++) {
+                int u = edgeSource[in[v].get(i)];
+                deleted[u]++;
+                prune(out[u], edgeTarget);
+            }
+        }
+    }
+
+    /**
+     * Drops edges leading to contracted terminals from an adjacency list, so
+     * that witness searches and later contractions do not rescan them.
+     *
+     * @param edges adjacency list to prune
+     * @param ends edgeSource or edgeTarget, giving the far end of an edge
+     */
+    private void prune(IntList edges, int[] ends) {
+        int kept = 0;
+        for (int i = 0; i < edges.size(); i++)
+            if (!contracted[ends[edges.get(i)]])
+                edges.set(kept++, edges.get(i));
+        while (edges.size() > kept)
+            edges.pop();
+    }
+
+    private int priority(int v, int[] deleted) {
+        int degree = 0;
+        for (int i = 0; i < out[v].size(); i++)
+            if (!contracted[edgeTarget[out[v].get(i)]])
+                degree++;
+        for (int i = 0; i < in[v].size(); i++)
+            if (!contracted[edgeSource[in[v].get(i)]])
+                degree++;
+        return contract(v, false) - degree + deleted[v];
+    }
+
+    /**
+     * Finds the shortcuts needed to contract v, adding them if apply is set.
+     *
+     * @param v id of the terminal to contract
+     * @param apply true to add the shortcuts, false to only count them
+     * @return number of shortcuts needed
+     */
+    private int contract(int v, boolean apply) {
+        int shortcuts = 0;
+        IntList inEdges = cheapest(in[v], edgeSource, v);
+        IntList outEdges = cheapest(out[v], edgeTarget, v);
+
+        for (int i = 0; i < inEdges.size(); i++) {
+            int inEdge = inEdges.get(i);
+            int u = edgeSource[inEdge];
+            int limit = 0;
+            for (int j = 0; j < outEdges.size(); j++)
+                limit = Math.max(limit,
+                        edgeWeight[inEdge] + edgeWeight[outEdges.get(j)]);
+            witnessSearch(u, v, limit);
+
+            for (int j = 0; j < outEdges.size(); j++) {
+                int outEdge = outEdges.get(j);
+                int w = edgeTarget[outEdge];
+                int via = edgeWeight[inEdge] + edgeWeight[outEdge];
+                if (w == u || witnessDist[w] <= via)
+                    continue;
+                shortcuts++;
+                if (apply)
+                    addEdge(u, w, via, inEdge, outEdge);
+            }
+            resetWitness();
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Returns the cheapest edge to or from each uncontracted neighbour among
+     * the given edges, collapsing parallel shuttles.
+     *
+     * @param edges incident edge ids of v
+     * @param ends edgeSource or edgeTarget, giving the neighbour of an edge
+     * @param v terminal the edges are incident to
+     * @return one edge id per distinct uncontracted neighbour
+     */
+    private IntList cheapest(IntList edges, int[] ends, int v) {
+        IntList result = new IntList();
+        for (int i = 0; i < edges.size(); i++) {
+            int e = edges.get(i);
+            int w = ends[e];
+            if (w == v || contracted[w])
+                continue;
+            // witnessDist doubles as a seen-marker holding the result index
+            if (witnessDist[w] == INF) {
+                witnessDist[w] = -1 - result.size();
+                result.add(e);
+            } else {
+                int slot = -1 - witnessDist[w];
+                if (edgeWeight[e] < edgeWeight[result.get(slot)])
+                    result.set(slot, e);
+            }
+        }
+        for (int i = 0; i < result.size(); i++)
+            witnessDist[ends[result.get(i)]] = INF;
+        return result;
+    }
+
+    /**
+     * Runs a bounded Dijkstra from u over uncontracted terminals other than
+     * v, filling witnessDist. Terminals beyond limit or past the settle
+     * budget are left at INF or an upper bound, which can only cause extra
+     * shortcuts, never wrong ones.
+     */
+    private void witnessSearch(int u, int v, int limit) {
+        witnessDist[u] = 0;
+        witnessTouched.add(u);
+        witnessHeap.push(u, 0);
+        int settled = 0;
+        while (!witnessHeap.isEmpty() && settled < WITNESS_LIMIT) {
+            if (witnessHeap.minKey() > limit)
+                break;
+            int x = witnessHeap.poll();
+            settled++;
+            IntList edges = out[x];
+            for (int i = 0; i < edges.size(); i++) {
+                int e = edges.get(i);
+                int y = edgeTarget[e];
+                if (y == v || contracted[y])
+                    continue;
+                int alt = witnessDist[x] + edgeWeight[e];
+                if (alt < witnessDist[y]) {
+                    if (witnessDist[y] == INF)
+                        witnessTouched.add(y);
+                    witnessDist[y] = alt;
+                    witnessHeap.push(y, alt);
+                }
+            }
+        }
+        witnessHeap.clear();
+    }
+
+    private void resetWitness() {
+        for (int i = 0; i < witnessTouched.size(); i++)
+            witnessDist[witnessTouched.get(i)] = INF;
+        witnessTouched.clear();
+    }
+
+    private void addEdge(int u, int w, int weight, int first, int second) {
+        if (edgeCount == edgeSource.length) {
+            int capacity = 2 * edgeCount;
+            edgeSource = Arrays.copyOf(edgeSource, capacity);
+            edgeTarget = Arrays.copyOf(edgeTarget, capacity);
+            edgeWeight = Arrays.copyOf(edgeWeight, capacity);
+            edgeFirst = Arrays.copyOf(edgeFirst, capacity);
+            edgeSecond = Arrays.copyOf(edgeSecond, capacity);
+        }
+        int e = edgeCount++;
+        edgeSource[e] = u;
+        edgeTarget[e] = w;
+        edgeWeight[e] = weight;
+        edgeFirst[e] = first;
+        edgeSecond[e] = second;
+        out[u].add(e);
+        in[w].add(e);
+    }
+}
@@ -0,0 +1,225 @@
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel single-source fastest-path search by delta-stepping (Meyer and
+ * Sanders).
+ *
+ * Terminals are kept in buckets of width delta by tentative time. The
+ * lowest non-empty bucket is settled by repeatedly relaxing the light
+ * edges (cost at most delta) of its terminals until it stops refilling,
+ * then the heavy edges of every terminal it settled are relaxed once. Each
+ * round of relaxations is split across a ForkJoinPool. A terminal's time
+ * and predecessor are packed into one long, so concurrent relaxations
+ * agree on both through a single compare-and-set.
+ */
+final class DeltaStepping {
+
+    private static final int INF = Integer.MAX_VALUE;
+    /* Packed entry of a terminal that has not been reached */
+    private static final long UNREACHED = pack(INF, -1);
+    /* Terminals relaxed by one leaf task */
+    private static final int BATCH = 256;
+
+    private final AirportGraph graph;
+    private final int delta;
+    /* Time in the high half, predecessor in the low half */
+    private final AtomicLongArray entries;
+
+    private DeltaStepping(AirportGraph graph, int delta) {
+        this.graph = graph;
+        this.delta = delta;
+        entries = new AtomicLongArray(graph.size);
+        for (int v = 0; v < graph.size; v++)
+            entries.set(v, UNREACHED);
+    }
+
+    /**
+     * Computes the fastest time and predecessor of every terminal.
+     *
+     * @param g network snapshot
+     * @param source id of the origin terminal
+     * @param delta bucket width, in minutes
+     * @param pool pool to relax edges on
+     * @param dist filled with the fastest time of each terminal, or
+     *             Integer.MAX_VALUE if it is not reachable
+     * @param parent filled with the predecessor of each terminal, -1 for
+     *               source and unreachable terminals
+     */
+    static void run(AirportGraph g, int source, int delta, ForkJoinPool pool,
+            int[] dist, int[] parent) {
+        DeltaStepping search = new DeltaStepping(g, delta);
+        search.entries.set(source, pack(0, -1));
+        search.settle(source, pool);
+        for (int v = 0; v < g.size; v++) {
+            long entry = search.entries.get(v);
+            dist[v] = time(entry);
+            parent[v] = (int) entry;
+        }
+    }
+
+    private void settle(int source, ForkJoinPool pool) {
+        int n = graph.size;
+        TreeMap<Integer, IntList> buckets = new TreeMap<>();
+        IntList first = new IntList();
+        first.add(source);
+        buckets.put(0, first);
+        // Round in which each terminal was last queued or settled
+        int[] queued = new int[n];
+        int[] settled = new int[n];
+        int round = 0;
+
+        while (!buckets.isEmpty()) {
+            Map.Entry<Integer, IntList> lowest = buckets.pollFirstEntry();
+            int bucket = lowest.getKey();
+            round++;
+
+            IntList frontier = current(lowest.getValue(), bucket, queued,
+                    round);
+            IntList done = new IntList();
+            while (!frontier.isEmpty()) {
+                for (int i = 0; i < frontier.size(); i++) {
+                    int u = frontier.get(i);
+                    if (settled[u] != round) {
+                        settled[u] = round;
+                        done.add(u);
+                    }
+                }
+                IntList improved = relax(frontier, true, pool);
+                // Reset so terminals improved again can re-enter this bucket
+                for (int i = 0; i < frontier.size(); i++)
+                    queued[frontier.get(i)] = 0;
+                frontier = distribute(improved, bucket, buckets, queued, round);
+            }
+
+            distribute(relax(done, false, pool), bucket, buckets, queued, round);
+        }
+    }
+
+    /**
+     * Relaxes the light or heavy edges of the given terminals, in parallel
+     * if there are enough of them, and returns the terminals that improved.
+     */
+    private IntList relax(IntList terminals, boolean light, ForkJoinPool pool) {
+        Relax task = new Relax(terminals.toArray(), 0, terminals.size(), light);
+        return terminals.size() > BATCH ? pool.invoke(task) : task.compute();
+    }
+
+    /**
+     * Returns the terminals of a bucket list that still belong to it,
+     * without duplicates.
+     */
+    private IntList current(IntList list, int bucket, int[] queued,
+            int round) {
+        IntList frontier = new IntList(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            int v = list.get(i);
+            if (queued[v] != round
+                    && time(entries.get(v)) / delta == bucket) {
+                queued[v] = round;
+                frontier.add(v);
+            }
+        }
+        return frontier;
+    }
+
+    /**
+     * Files improved terminals into their buckets and returns the ones that
+     * fell into the bucket being settled.
+     */
+    private IntList distribute(IntList improved, int bucket,
+            TreeMap<Integer, IntList> buckets, int[] queued, int round) {
+        IntList again = new IntList();
+        for (int i = 0; i < improved.size(); i++) {
+            int v = improved.get(i);
+            int b = time(entries.get(v)) / delta;
+            if (b == bucket) {
+                if (queued[v] != round) {
+                    queued[v] = round;
+                    again.add(v);
+                }
+            } else {
+                buckets.computeIfAbsent(b, k -> new IntList()).add(v);
+            }
+        }
+        return again;
+    }
+
+    /**
+     * Lowers v's time to the given one unless it is already as low.
+     *
+     * @return true if the time was lowered
+     */
+    private boolean lower(int v, int time, int from) {
+        long next = pack(time, from);
+        while (true) {
+            long entry = entries.get(v);
+            if (time(entry) <= time)
+                return false;
+            if (entries.compareAndSet(v, entry, next))
+                return true;
+        }
+    }
+
+    private static long pack(int time, int parent) {
+        return ((long) time << 32) | (parent & 0xffffffffL);
+    }
+
+    private static int time(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /**
+     * Relaxes the light or the heavy edges of a range of terminals and
+     * returns the terminals whose time improved.
+     */
+    private final class Relax extends RecursiveTask<IntList> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] terminals;
+        private final int from;
+        private final int to;
+        private final boolean light;
+
+        Relax(int[] terminals, int from, int to, boolean light) {
+            this.terminals = terminals;
+            this.from = from;
+            this.to = to;
+            this.light = light;
+        }
+
+        @Override
+        protected IntList compute() {
+            if (to - from > BATCH) {
+                int mid = (from + to) >>> 1;
+                Relax left = new Relax(terminals, from, mid, light);
+                left.fork();
+                IntList result = new Relax(terminals, mid, to, light).compute();
+                IntList other = left.join();
+                for (int i = 0; i < other.size(); i++)
+                    result.add(other.get(i));
+                return result;
+            }
+
+            AirportGraph g = graph;
+            IntList improved = new IntList();
+            for (int i = from; i < to; i++) {
+                int u = terminals[i];
+                int time = time(entries.get(u));
+                for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                    int w = g.weights[e];
+                    if ((w <= delta) != light)
+                        continue;
+                    int v = g.targets[e];
+                    if (lower(v, time + w, u))
+                        improved.add(v);
+                }
+            }
+            return improved;
+        }
+    }
+}
@@ -1,5 +1,44 @@
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Landing queue kept as a binary min-heap ordered by (time, plane number),
+ * with an index from plane number to the heap entries of that plane.
+ *
+ * Each entry records its own position in the heap array and is moved with
+ * it, so the index never has to be updated as entries sift. Adding a plane
+ * and removing one by number are O(log n); size, isPresent and looking at
+ * the next plane are O(1). A plane's time is parsed once when it is added
+ * rather than on every comparison.
+ */
 public class Dispatcher extends DispatcherBase {
 
+    /**
+     * A plane in the queue.
+     */
+    private static final class Entry {
+
+        final Plane plane;
+        /* Time as returned by Plane.getIntTime */
+        final int time;
+        /* Index of this entry in the heap array, or -1 once removed */
+        int slot;
+        /* Another entry with the same plane number, or null */
+        Entry sameNumber;
+
+        Entry(Plane plane) {
+            this.plane = plane;
+            this.time = plane.getIntTime();
+        }
+    }
+
+    /**
+     * Node of the sorted linked list this queue used to be.
+     *
+     * @deprecated The queue is no longer a linked list; only head is still
+     * provided, as a node holding the next plane to land.
+     */
+    @Deprecated
     public static class Node {
         Plane currentPlane;
         Node previous;
@@ -10,116 +49,160 @@ public class Dispatcher extends DispatcherBase {
         }
     }
 
+    /**
+     * The next plane to land, or null if the queue is empty. Its previous
+     * and next links are always null, and assigning it has no effect on the
+     * queue.
+     *
+     * @deprecated The queue is no longer a linked list; use size and
+     * allocateLandingSlot instead.
+     */
+    @Deprecated
     public Node head = null;
 
+    private Entry[] heap = new Entry[16];
+    private int size;
+    /* Entries of each plane number in the queue */
+    private final HashMap<String, Entry> byNumber = new HashMap<>();
+
     @Override
     public int size() {
-        int count = 0;
-        Node temp = head;
-        while (temp != null) {
-            count++;
-            temp = temp.next;
-        }
-        return count;
+        return size;
     }
 
     @Override
     public void addPlane(String planeNumber, String time) {
-        Plane plane = new Plane(planeNumber, time);
-
-        Node currentNode;
-        Node newNode = new Node(plane);
-
-        if (head == null) {
-            head = newNode;
-        } else if (head.currentPlane.compareTo(newNode.currentPlane) > 0) {
-            newNode.next = head;
-            newNode.next.previous = newNode;
-            head = newNode;
-        } else {
-            currentNode = head;
-
-            while (currentNode.next != null &&
-                    currentNode.next.currentPlane.compareTo(newNode.currentPlane) < 0) {
-                currentNode = currentNode.next;
-            }
-
-            newNode.next = currentNode.next;
-
-            if (currentNode.next != null) {
-                newNode.next.previous = newNode;
-            }
-
-            currentNode.next = newNode;
-            newNode.previous = currentNode;
-        }
+        Entry entry = new Entry(new Plane(planeNumber, time));
+        if (size == heap.length)
+            heap = Arrays.copyOf(heap, 2 * size);
+        entry.sameNumber = byNumber.put(planeNumber, entry);
+        entry.slot = size;
+        heap[size++] = entry;
+        siftUp(entry);
+        refreshHead();
     }
 
     public int getIntTime(String time) {
-        StringBuilder sb = new StringBuilder(time);
-        sb.deleteCharAt(2);
-        String resultString = sb.toString();
-        return Integer.parseInt(resultString);
+        return Plane.toIntTime(time);
     }
 
     @Override
     public String allocateLandingSlot(String currentTime) {
-        if (head == null) {
+        if (size == 0)
             return null;
-        }
-        int firstPlaneTime = head.currentPlane.getIntTime();
-        int currentIntTime = getIntTime(currentTime);
-        if (firstPlaneTime > currentIntTime + 5) {
+        Entry first = heap[0];
+        if (first.time > getIntTime(currentTime) + 5)
             return null;
-        }
-        String allocated = head.currentPlane.getPlaneNumber();
-        head = head.next;
-        return allocated;
+        unlink(first);
+        remove(first);
+        refreshHead();
+        return first.plane.getPlaneNumber();
     }
 
     @Override
     public String emergencyLanding(String planeNumber) {
-
-        if (!isPresent(planeNumber)) {
+        Entry entry = byNumber.remove(planeNumber);
+        if (entry == null)
             return null;
-        }
-
-        Node temp = head;
-
-        while (temp != null) {
-            if (temp.currentPlane.getPlaneNumber().equals(planeNumber)) {
-                if(temp == head) {
-                    head = head.next;
-                    temp = head;
-                } else {
-                    temp.previous.next = temp.next;
-                    temp = temp.next;
-                }
-            } else {
-                temp.previous = temp;
-                temp = temp.next;
-            }
-        }
+        for (; entry != null; entry = entry.sameNumber)
+            remove(entry);
+        refreshHead();
         return planeNumber;
     }
 
     @Override
     public boolean isPresent(String planeNumber) {
-        boolean flag = false;
-        Node currentNode = head;
+        return byNumber.containsKey(planeNumber);
+    }
+
+    /**
+     * Points the deprecated head field at the next plane to land, creating
+     * a node only when that plane changes.
+     */
+    private void refreshHead() {
+        Plane first = size == 0 ? null : heap[0].plane;
+        if (first == null)
+            head = null;
+        else if (head == null || head.currentPlane != first)
+            head = new Node(first);
+    }
+
+    /**
+     * Drops an entry from the index, keeping any other entries of the same
+     * plane number.
+     */
+    private void unlink(Entry entry) {
+        String number = entry.plane.getPlaneNumber();
+        Entry head = byNumber.get(number);
+        if (head == entry) {
+            if (entry.sameNumber == null)
+                byNumber.remove(number);
+            else
+                byNumber.put(number, entry.sameNumber);
+            return;
+        }
+        while (head.sameNumber != entry)
+            head = head.sameNumber;
+        head.sameNumber = entry.sameNumber;
+    }
 
-        if(head == null) {
-            return false;
+    /**
+     * Removes an entry from the heap by moving the last entry into its slot.
+     */
+    private void remove(Entry entry) {
+        int slot = entry.slot;
+        entry.slot = -1;
+        Entry last = heap[--size];
+        heap[size] = null;
+        if (last == entry)
+            return;
+        last.slot = slot;
+        heap[slot] = last;
+        siftUp(last);
+        if (last.slot == slot)
+            siftDown(last);
+    }
+
+    private void siftUp(Entry entry) {
+        int i = entry.slot;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            Entry p = heap[parent];
+            if (!before(entry, p))
+                break;
+            heap[i] = p;
+            p.slot = i;
+            i = parent;
         }
+        heap[i] = entry;
+        entry.slot = i;
+    }
 
-        while(currentNode != null) {
-            if(currentNode.currentPlane.getPlaneNumber().equals(planeNumber)) {
-                flag = true;
+    private void siftDown(Entry entry) {
+        int i = entry.slot;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
                 break;
-            }
-            currentNode = currentNode.next;
+            if (child + 1 < size && before(heap[child + 1], heap[child]))
+                child++;
+            if (!before(heap[child], entry))
+                break;
+            heap[i] = heap[child];
+            heap[i].slot = i;
+            i = child;
         }
-        return flag;
+        heap[i] = entry;
+        entry.slot = i;
     }
-}
 
+    /**
+     * Returns whether a lands before b: earlier time first, then plane
+     * number in alphabetical order, as in Plane.compareTo.
+     */
+    private static boolean before(Entry a, Entry b) {
+        if (a.time != b.time)
+            return a.time < b.time;
+        return a.plane.getPlaneNumber().compareTo(b.plane.getPlaneNumber()) < 0;
+    }
+}
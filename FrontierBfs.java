@@ -0,0 +1,202 @@
+import java.util.Arrays;
+
+/**
+ * Direction-optimizing breadth-first search for fewest-shuttle paths.
+ *
+ * Each level is expanded either top-down, scanning the shuttles of every
+ * frontier terminal, or bottom-up, letting every unvisited terminal look
+ * for any neighbour on the frontier and stop at the first one found. Every
+ * shuttle can be ridden both ways, so a terminal's own slots are also its
+ * incoming arcs. Bottom-up wins once the frontier touches a large share of
+ * the remaining edges, which happens in the middle levels of a dense hub
+ * network; the search switches over then, and back once the frontier
+ * shrinks (Beamer et al.). Visited and frontier sets are long[] bitsets so
+ * the bottom-up sweeps stay cache-friendly.
+ */
+final class FrontierBfs {
+
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+    /* Go bottom-up once frontier edges exceed unexplored edges / ALPHA */
+    private static final int ALPHA = 14;
+    /* Go top-down again once the frontier holds fewer than n / BETA */
+    private static final int BETA = 24;
+
+    private FrontierBfs() {
+    }
+
+    /**
+     * Returns a path with the fewest shuttles from source to target.
+     *
+     * @param g network snapshot
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @return path to target, or null if target is not reachable
+     */
+    static AirportBase.Path shortestPath(AirportGraph g, int source,
+            int target) {
+        Workspace w = Workspace.get(g.size);
+        if (!run(g, source, target, w))
+            return null;
+        return g.toPath(w.forward.parent, target, w.forward.dist[target]);
+    }
+
+    /**
+     * Runs the search from source, filling in the shuttle count, travel
+     * time and predecessor of every terminal reached. Terminals that are not
+     * reached get UNREACHABLE hops and time and a parent of -1.
+     *
+     * @param g network snapshot
+     * @param source id of the starting terminal
+     * @param target id of a terminal to stop at, or -1 to search everything
+     * @param parent predecessor of each terminal, -1 for source
+     * @param time travel time along each terminal's path
+     * @param hops shuttle count of each terminal's path
+     * @return true if target was reached
+     */
+    static boolean search(AirportGraph g, int source, int target,
+            int[] parent, int[] time, int[] hops) {
+        Workspace w = Workspace.get(g.size);
+        boolean found = run(g, source, target, w);
+        for (int v = 0; v < g.size; v++) {
+            boolean reached = w.forward.reached(v);
+            parent[v] = reached ? w.forward.parent[v] : -1;
+            time[v] = reached ? w.forward.dist[v] : UNREACHABLE;
+            hops[v] = reached ? w.backward.dist[v] : UNREACHABLE;
+        }
+        return found;
+    }
+
+    /**
+     * Searches from source in the given workspace. The forward side ends
+     * up holding each reached terminal's travel time and predecessor, and
+     * the backward side its shuttle count.
+     */
+    private static boolean run(AirportGraph g, int source, int target,
+            Workspace w) {
+        int n = g.size;
+        Workspace.Side side = w.forward;
+        Workspace.Side levels = w.backward;
+        // A terminal's hop count is final as soon as it is reached
+        side.reach(source, 0, -1);
+        side.settle(source);
+        levels.reach(source, 0, -1);
+        if (source == target)
+            return true;
+
+        int words = (n + 63) >>> 6;
+        long[] visited = w.visited;
+        long[] frontierBits = w.frontierBits;
+        long[] nextBits = w.nextBits;
+        int[] queue = side.queue;
+        int[] nextQueue = levels.queue;
+        Arrays.fill(visited, 0, words, 0);
+        visited[source >>> 6] |= 1L << source;
+        queue[0] = source;
+
+        int frontier = 1;
+        long frontierEdges = degree(g, source);
+        long unexploredEdges = g.edgeCount() - frontierEdges;
+        boolean topDown = true;
+        int level = 0;
+
+        while (frontier > 0) {
+            level++;
+            if (topDown && frontierEdges > unexploredEdges / ALPHA) {
+                topDown = false;
+                Arrays.fill(frontierBits, 0, words, 0);
+                for (int i = 0; i < frontier; i++)
+                    frontierBits[queue[i] >>> 6] |= 1L << queue[i];
+            } else if (!topDown && frontier < n / BETA) {
+                topDown = true;
+                frontier = toQueue(frontierBits, words, queue);
+            }
+
+            int next = 0;
+            long nextEdges = 0;
+            if (topDown) {
+                for (int i = 0; i < frontier; i++) {
+                    int u = queue[i];
+                    for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                        int v = g.targets[e];
+                        if ((visited[v >>> 6] & (1L << v)) != 0)
+                            continue;
+                        visited[v >>> 6] |= 1L << v;
+                        side.reach(v, side.dist[u] + g.weights[e], u);
+                        side.settle(v);
+                        levels.reach(v, level, -1);
+                        if (v == target) {
+                            side.relaxed(e - g.offsets[u] + 1);
+                            return true;
+                        }
+                        nextQueue[next++] = v;
+                        nextEdges += degree(g, v);
+                    }
+                    side.relaxed(degree(g, u));
+                }
+                int[] swap = queue;
+                queue = nextQueue;
+                nextQueue = swap;
+            } else {
+                Arrays.fill(nextBits, 0, words, 0);
+                for (int x = 0; x < words; x++) {
+                    long unvisited = ~visited[x];
+                    while (unvisited != 0) {
+                        int v = (x << 6) + Long.numberOfTrailingZeros(unvisited);
+                        unvisited &= unvisited - 1;
+                        if (v >= n)
+                            break;
+                        int end = g.offsets[v + 1];
+                        int e = g.offsets[v];
+                        while (e < end && (frontierBits[g.targets[e] >>> 6]
+                                & (1L << g.targets[e])) == 0)
+                            e++;
+                        side.relaxed(Math.min(e + 1, end) - g.offsets[v]);
+                        if (e == end)
+                            continue;
+                        int u = g.targets[e];
+                        nextBits[x] |= 1L << v;
+                        side.reach(v, side.dist[u] + g.reverseWeight(e), u);
+                        side.settle(v);
+                        levels.reach(v, level, -1);
+                        if (v == target)
+                            return true;
+                        next++;
+                        nextEdges += degree(g, v);
+                    }
+                }
+                // Mark the new level visited only after the sweep, so that
+                // it cannot act as a frontier within the same level
+                for (int x = 0; x < words; x++)
+                    visited[x] |= nextBits[x];
+                long[] swap = frontierBits;
+                frontierBits = nextBits;
+                nextBits = swap;
+            }
+            frontier = next;
+            frontierEdges = nextEdges;
+            unexploredEdges -= nextEdges;
+        }
+        return false;
+    }
+
+    private static int degree(AirportGraph g, int u) {
+        return g.offsets[u + 1] - g.offsets[u];
+    }
+
+    /**
+     * Writes the members of a bitset into queue in increasing order.
+     *
+     * @return number of members
+     */
+    private static int toQueue(long[] bits, int words, int[] queue) {
+        int size = 0;
+        for (int w = 0; w < words; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                queue[size++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Fastest-path trees out of a set of hub terminals, kept up to date as
+ * shuttles are inserted and removed.
+ *
+ * The trees live on the airport's adjacency lists rather than on a CSR
+ * snapshot, so a mutation never triggers a rebuild. Inserting a shuttle
+ * relaxes its two arcs and propagates only the distances that improve.
+ * Removing a tree shuttle detaches the subtree below it, re-seeds each
+ * detached terminal from its neighbours outside the subtree, and re-runs
+ * Dijkstra inside the subtree only. Either way the work is proportional to
+ * the terminals whose distance changes and their incident shuttles.
+ */
+final class HubTrees {
+
+    /* Live adjacency lists of the airport */
+    private final Map<? extends AirportBase.TerminalBase,
+            ? extends List<AirportBase.ShuttleBase>> adjacency;
+    private final Map<AirportBase.TerminalBase, Tree> trees =
+            new LinkedHashMap<>();
+
+    /**
+     * Builds a tree for each hub over the given adjacency lists.
+     *
+     * @param adjacency live adjacency lists of the airport
+     * @param hubs terminals to maintain trees for
+     */
+    HubTrees(Map<? extends AirportBase.TerminalBase,
+            ? extends List<AirportBase.ShuttleBase>> adjacency,
+            Collection<? extends AirportBase.TerminalBase> hubs) {
+        this.adjacency = adjacency;
+        for (AirportBase.TerminalBase hub : hubs) {
+            if (!adjacency.containsKey(hub) || trees.containsKey(hub))
+                continue;
+            Tree tree = new Tree();
+            Label root = new Label();
+            tree.labels.put(hub, root);
+            tree.push(hub, root);
+            propagate(tree);
+            trees.put(hub, tree);
+        }
+    }
+
+    /**
+     * Returns the fastest path from hub to destination by walking the tree's
+     * parent shuttles back from destination.
+     *
+     * @param hub hub terminal
+     * @param destination the destination terminal
+     * @return path from hub, or null if hub is not a hub or destination is
+     * not reachable from it
+     */
+    AirportBase.Path path(AirportBase.TerminalBase hub,
+            AirportBase.TerminalBase destination) {
+        Tree tree = trees.get(hub);
+        Label label = tree == null ? null : tree.labels.get(destination);
+        if (label == null)
+            return null;
+
+        List<AirportBase.TerminalBase> route = new ArrayList<>();
+        AirportBase.TerminalBase v = destination;
+        route.add(v);
+        for (Label l = label; l.parent != null; l = tree.labels.get(v)) {
+            v = other(l.parent, v);
+            route.add(v);
+        }
+        Collections.reverse(route);
+        return new AirportBase.Path(route, label.dist);
+    }
+
+    /**
+     * Updates every tree after a shuttle was added to the adjacency lists.
+     *
+     * @param shuttle inserted shuttle
+     */
+    void shuttleInserted(AirportBase.ShuttleBase shuttle) {
+        for (Tree tree : trees.values()) {
+            relax(tree, shuttle.getOrigin(), shuttle);
+            relax(tree, shuttle.getDestination(), shuttle);
+            propagate(tree);
+        }
+    }
+
+    /**
+     * Updates every tree after a shuttle was removed from the adjacency
+     * lists.
+     *
+     * @param shuttle removed shuttle
+     */
+    void shuttleRemoved(AirportBase.ShuttleBase shuttle) {
+        for (Tree tree : trees.values()) {
+            List<AirportBase.TerminalBase> roots = new ArrayList<>(1);
+            addIfChild(tree, shuttle, shuttle.getOrigin(), roots);
+            addIfChild(tree, shuttle, shuttle.getDestination(), roots);
+            repair(tree, roots);
+        }
+    }
+
+    /**
+     * Updates every tree after a terminal and its incident shuttles were
+     * removed from the adjacency lists. A tree rooted at the terminal is
+     * dropped.
+     *
+     * @param terminal removed terminal
+     * @param incident shuttles that were incident to the terminal
+     */
+    void terminalRemoved(AirportBase.TerminalBase terminal,
+            List<AirportBase.ShuttleBase> incident) {
+        trees.remove(terminal);
+        for (Tree tree : trees.values()) {
+            if (tree.labels.remove(terminal) == null)
+                continue;
+            List<AirportBase.TerminalBase> roots = new ArrayList<>();
+            for (AirportBase.ShuttleBase shuttle : incident)
+                addIfChild(tree, shuttle, other(shuttle, terminal), roots);
+            repair(tree, roots);
+        }
+    }
+
+    private static void addIfChild(Tree tree, AirportBase.ShuttleBase shuttle,
+            AirportBase.TerminalBase v, List<AirportBase.TerminalBase> roots) {
+        Label label = tree.labels.get(v);
+        if (label != null && label.parent == shuttle)
+            roots.add(v);
+    }
+
+    /**
+     * Recomputes the subtrees below the given roots, whose parent shuttles
+     * have been removed.
+     */
+    private void repair(Tree tree, List<AirportBase.TerminalBase> roots) {
+        if (roots.isEmpty())
+            return;
+
+        // Collect the detached subtrees by following parent shuttles down
+        Set<AirportBase.TerminalBase> affected = new HashSet<>();
+        List<AirportBase.TerminalBase> stack = new ArrayList<>(roots);
+        while (!stack.isEmpty()) {
+            AirportBase.TerminalBase x = stack.remove(stack.size() - 1);
+            if (!affected.add(x))
+                continue;
+            for (AirportBase.ShuttleBase shuttle : adjacency.get(x)) {
+                AirportBase.TerminalBase y = other(shuttle, x);
+                Label label = tree.labels.get(y);
+                if (y != x && label != null && label.parent == shuttle)
+                    stack.add(y);
+            }
+        }
+        for (AirportBase.TerminalBase x : affected)
+            tree.labels.remove(x);
+
+        // Re-seed each detached terminal from its neighbours outside the
+        // subtree, whose distances cannot have changed
+        for (AirportBase.TerminalBase x : affected)
+            for (AirportBase.ShuttleBase shuttle : adjacency.get(x))
+                relax(tree, other(shuttle, x), shuttle);
+        propagate(tree);
+    }
+
+    /**
+     * Relaxes the arc leaving 'from' along the given shuttle, queueing the
+     * far end if its distance improves.
+     */
+    private static void relax(Tree tree, AirportBase.TerminalBase from,
+            AirportBase.ShuttleBase shuttle) {
+        Label source = tree.labels.get(from);
+        if (source == null)
+            return;
+        AirportBase.TerminalBase to = other(shuttle, from);
+        int dist = source.dist + shuttle.getTime() + from.getWaitingTime();
+        Label target = tree.labels.get(to);
+        if (target == null) {
+            target = new Label();
+            target.dist = Integer.MAX_VALUE;
+            tree.labels.put(to, target);
+        }
+        if (dist < target.dist) {
+            target.dist = dist;
+            target.parent = shuttle;
+            tree.push(to, target);
+        }
+    }
+
+    /**
+     * Runs Dijkstra from the queued terminals until no distance improves.
+     */
+    private void propagate(Tree tree) {
+        while (!tree.queue.isEmpty()) {
+            Entry entry = tree.queue.poll();
+            if (entry.dist != entry.label.dist)
+                continue;
+            for (AirportBase.ShuttleBase shuttle : adjacency.get(entry.terminal))
+                relax(tree, entry.terminal, shuttle);
+        }
+    }
+
+    private static AirportBase.TerminalBase other(
+            AirportBase.ShuttleBase shuttle, AirportBase.TerminalBase v) {
+        return shuttle.getOrigin() == v ? shuttle.getDestination()
+                : shuttle.getOrigin();
+    }
+
+    private static final class Tree {
+
+        private final Map<AirportBase.TerminalBase, Label> labels =
+                new HashMap<>();
+        /* Terminals whose distance improved, in lazy-deletion order */
+        private final PriorityQueue<Entry> queue =
+                new PriorityQueue<>((a, b) -> Integer.compare(a.dist, b.dist));
+
+        void push(AirportBase.TerminalBase terminal, Label label) {
+            queue.add(new Entry(terminal, label, label.dist));
+        }
+    }
+
+    private static final class Label {
+
+        /* Fastest time from the hub */
+        private int dist;
+        /* Shuttle into this terminal on the tree path, null for the hub */
+        private AirportBase.ShuttleBase parent;
+    }
+
+    private static final class Entry {
+
+        private final AirportBase.TerminalBase terminal;
+        private final Label label;
+        private final int dist;
+
+        Entry(AirportBase.TerminalBase terminal, Label label, int dist) {
+            this.terminal = terminal;
+            this.label = label;
+            this.dist = dist;
+        }
+    }
+}
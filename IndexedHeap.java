@@ -0,0 +1,143 @@
+import java.util.Arrays;
+
+/**
+ * A 4-ary min-heap of int ids keyed by int priorities, with a position index
+ * so that the key of an id already in the heap can be decreased in place.
+ *
+ * Ids must lie in 0..capacity-1. Each id is in the heap at most once, which
+ * bounds the heap at one entry per terminal instead of one per relaxation.
+ */
+final class IndexedHeap {
+
+    private static final int ARITY = 4;
+
+    /* Heap-ordered ids */
+    private final int[] heap;
+    /* Key of each id, valid while the id is in the heap */
+    private final int[] keys;
+    /* Index of each id in heap, or -1 if absent */
+    private final int[] positions;
+    private int size;
+    /* Running totals of insertions, key decreases and polls, for SearchStats */
+    long pushes;
+    long decreases;
+    long polls;
+
+    /**
+     * Creates an empty heap for ids 0..capacity-1.
+     *
+     * @param capacity number of distinct ids
+     */
+    IndexedHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int id) {
+        return positions[id] >= 0;
+    }
+
+    /**
+     * Returns the smallest key in the heap. The heap must not be empty.
+     *
+     * @return minimum key
+     */
+    int minKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Inserts the id with the given key, or lowers its key if it is already
+     * in the heap with a larger one.
+     *
+     * @param id id to insert or update
+     * @param key new key of the id
+     * @return true if the heap changed, false if the id already had a key
+     * no larger than the given one
+     */
+    boolean push(int id, int key) {
+        int i = positions[id];
+        if (i < 0) {
+            i = size++;
+            pushes++;
+        } else if (key >= keys[id]) {
+            return false;
+        } else {
+            decreases++;
+        }
+        keys[id] = key;
+        siftUp(id, i);
+        return true;
+    }
+
+    /**
+     * Removes and returns the id with the smallest key. The heap must not be
+     * empty.
+     *
+     * @return id with the minimum key
+     */
+    int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        polls++;
+        int last = heap[--size];
+        if (size > 0)
+            siftDown(last, 0);
+        return top;
+    }
+
+    /**
+     * Removes every id from the heap in O(size).
+     */
+    void clear() {
+        for (int i = 0; i < size; i++)
+            positions[heap[i]] = -1;
+        size = 0;
+    }
+
+    private void siftUp(int id, int i) {
+        int key = keys[id];
+        while (i > 0) {
+            int parent = (i - 1) / ARITY;
+            int p = heap[parent];
+            if (keys[p] <= key)
+                break;
+            heap[i] = p;
+            positions[p] = i;
+            i = parent;
+        }
+        heap[i] = id;
+        positions[id] = i;
+    }
+
+    private void siftDown(int id, int i) {
+        int key = keys[id];
+        while (true) {
+            int first = ARITY * i + 1;
+            if (first >= size)
+                break;
+            int best = first;
+            int end = Math.min(first + ARITY, size);
+            for (int c = first + 1; c < end; c++)
+                if (keys[heap[c]] < keys[heap[best]])
+                    best = c;
+            if (keys[heap[best]] >= key)
+                break;
+            heap[i] = heap[best];
+            positions[heap[i]] = i;
+            i = best;
+        }
+        heap[i] = id;
+        positions[id] = i;
+    }
+}
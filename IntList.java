@@ -0,0 +1,58 @@
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints, used where an ArrayList<Integer> would
+ * box every element.
+ */
+final class IntList {
+
+    private int[] data;
+    private int size;
+
+    IntList() {
+        this(8);
+    }
+
+    IntList(int capacity) {
+        data = new int[Math.max(1, capacity)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int get(int i) {
+        return data[i];
+    }
+
+    void set(int i, int value) {
+        data[i] = value;
+    }
+
+    void add(int value) {
+        if (size == data.length)
+            data = Arrays.copyOf(data, 2 * size);
+        data[size++] = value;
+    }
+
+    /**
+     * Removes and returns the last element. The list must not be empty.
+     *
+     * @return last element
+     */
+    int pop() {
+        return data[--size];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,339 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The K fastest loopless paths between two terminals, found with Yen's
+ * algorithm.
+ *
+ * A reverse Dijkstra from the target gives the exact remaining time from
+ * every terminal it has settled, and its current radius is a lower bound
+ * for all the others. Removing terminals and shuttles can only make the
+ * remaining time longer, so this is an admissible A* heuristic for every
+ * spur search, and when the spur terminal's own tree path avoids the
+ * removed parts it is the spur path and no search is needed at all. The
+ * reverse search stops once it settles the source, and is only resumed
+ * as far as the time of the K-th candidate held, so nearby pairs never pay
+ * for the whole network. Spur searches stop as soon as they cannot beat
+ * the candidates already held. Both searches run in the calling thread's
+ * Workspace, so K paths cost a small multiple of a single search and
+ * allocate little besides the paths themselves.
+ */
+final class KShortestPaths {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final AirportGraph graph;
+    private final int source;
+    private final int target;
+    /*
+     * Resumable reverse search: dist is the time to target and parent the
+     * next terminal on the fastest path to it
+     */
+    private final Workspace.Side reverse;
+    /* Spur search, reset for each spur */
+    private final Workspace.Side spur;
+    /* Terminals of the root path, and next terminals banned at the spur */
+    private final long[] removed;
+    private final long[] banned;
+    /* Time of the last terminal the reverse search settled */
+    private int radius;
+
+    private KShortestPaths(AirportGraph graph, int source, int target) {
+        this.graph = graph;
+        this.source = source;
+        this.target = target;
+        Workspace w = Workspace.get(graph.size);
+        reverse = w.backward;
+        spur = w.forward;
+        // The bitsets are only used by breadth-first search otherwise
+        int words = (graph.size + 63) >>> 6;
+        removed = w.visited;
+        banned = w.frontierBits;
+        Arrays.fill(removed, 0, words, 0);
+        Arrays.fill(banned, 0, words, 0);
+
+        reverse.reach(target, 0, -1);
+        reverse.heap.push(target, 0);
+        while (!reverse.settled(source) && !reverse.heap.isEmpty())
+            settleReverse();
+    }
+
+    /**
+     * Returns up to k fastest loopless paths from source to target, in order
+     * of travel time.
+     *
+     * @param g network snapshot
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @param k maximum number of paths
+     * @return paths in non-decreasing order of time, empty if target is not
+     * reachable
+     */
+    static List<AirportBase.Path> fastestPaths(AirportGraph g, int source,
+            int target, int k) {
+        List<AirportBase.Path> result = new ArrayList<>();
+        if (k <= 0)
+            return result;
+        KShortestPaths search = new KShortestPaths(g, source, target);
+        for (Candidate c : search.run(k))
+            result.add(search.toPath(c));
+        return result;
+    }
+
+    /**
+     * Settles the next terminal of the reverse search, relaxing its arcs
+     * backwards.
+     */
+    private void settleReverse() {
+        AirportGraph g = graph;
+        IndexedHeap heap = reverse.heap;
+        int u = heap.poll();
+        reverse.settle(u);
+        radius = reverse.dist[u];
+        reverse.relaxed(g.offsets[u + 1] - g.offsets[u]);
+        for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+            int v = g.targets[e];
+            if (reverse.settled(v))
+                continue;
+            int alt = radius + g.reverseWeight(e);
+            if (heap.push(v, alt))
+                reverse.reach(v, alt, u);
+        }
+    }
+
+    /**
+     * Returns the exact time from v to target if the reverse search has
+     * settled v, otherwise a lower bound, or INF if v cannot reach target.
+     */
+    private int remaining(int v) {
+        if (reverse.settled(v))
+            return reverse.dist[v];
+        return reverse.heap.isEmpty() ? INF : radius;
+    }
+
+    private List<Candidate> run(int k) {
+        List<Candidate> accepted = new ArrayList<>(k);
+        if (!reverse.settled(source))
+            return accepted;
+
+        // Candidates sorted by time, never more than are still needed
+        List<Candidate> candidates = new ArrayList<>();
+        Set<Candidate> seen = new HashSet<>();
+        Candidate first = new Candidate(chain(source, new IntList()),
+                reverse.dist[source]);
+        accepted.add(first);
+        seen.add(first);
+
+        while (accepted.size() < k) {
+            Candidate last = accepted.get(accepted.size() - 1);
+            int rootTime = 0;
+            for (int i = 0; i + 1 < last.nodes.length; i++) {
+                int spur = last.nodes[i];
+                int needed = k - accepted.size();
+                int bound = candidates.size() >= needed
+                        ? candidates.get(needed - 1).time : INF;
+
+                // Settle every terminal that could lie on a path beating the
+                // bound, so those get exact remaining times
+                if (bound != INF)
+                    while (!reverse.heap.isEmpty()
+                            && (long) rootTime + radius < bound)
+                        settleReverse();
+
+                // A spur path cannot beat the fastest path from spur
+                int rest = remaining(spur);
+                if (rest != INF && (long) rootTime + rest < bound) {
+                    for (int j = 0; j < i; j++)
+                        set(removed, last.nodes[j]);
+                    for (Candidate p : accepted)
+                        if (sharesRoot(p, last, i))
+                            set(banned, p.nodes[i + 1]);
+
+                    Candidate c = spurPath(last, i, rootTime, bound);
+                    if (c != null && seen.add(c))
+                        insert(candidates, c, needed);
+
+                    for (int j = 0; j < i; j++)
+                        clear(removed, last.nodes[j]);
+                    for (Candidate p : accepted)
+                        if (sharesRoot(p, last, i))
+                            clear(banned, p.nodes[i + 1]);
+                }
+                rootTime += arcTime(spur, last.nodes[i + 1]);
+            }
+            if (candidates.isEmpty())
+                break;
+            accepted.add(candidates.remove(0));
+        }
+        return accepted;
+    }
+
+    /**
+     * Returns the fastest path that follows 'path' up to its terminal at
+     * index i, then leaves it without revisiting the root or taking a
+     * banned next terminal, or null if none beats bound.
+     */
+    private Candidate spurPath(Candidate path, int i, int rootTime,
+            int bound) {
+        int from = path.nodes[i];
+
+        // The spur terminal's tree path is optimal if it is still allowed
+        if (reverse.settled(from) && !has(banned, reverse.parent[from])) {
+            boolean clear = true;
+            for (int v = reverse.parent[from]; v != -1 && clear;
+                    v = reverse.parent[v])
+                clear = !has(removed, v);
+            if (clear) {
+                IntList nodes = root(path, i);
+                nodes.pop();
+                return new Candidate(chain(from, nodes),
+                        rootTime + reverse.dist[from]);
+            }
+        }
+
+        // Otherwise run A* guided by the reverse search
+        AirportGraph g = graph;
+        Workspace.Side side = spur;
+        IndexedHeap heap = side.heap;
+        side.reset(g.size);
+        side.reach(from, rootTime, -1);
+        heap.push(from, rootTime + remaining(from));
+        while (!heap.isEmpty()) {
+            if (heap.minKey() >= bound)
+                break;
+            int u = heap.poll();
+            side.settle(u);
+            if (u == target) {
+                IntList nodes = root(path, i);
+                nodes.pop();
+                IntList tail = new IntList();
+                for (int v = target; v != -1; v = side.parent[v])
+                    tail.add(v);
+                for (int j = tail.size() - 1; j >= 0; j--)
+                    nodes.add(tail.get(j));
+                return new Candidate(nodes.toArray(), side.dist[target]);
+            }
+
+            side.relaxed(g.offsets[u + 1] - g.offsets[u]);
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                int v = g.targets[e];
+                if (side.settled(v) || has(removed, v)
+                        || (u == from && has(banned, v)))
+                    continue;
+                int rest = remaining(v);
+                if (rest == INF)
+                    continue;
+                int alt = side.dist[u] + g.weights[e];
+                if (alt >= side.distance(v))
+                    continue;
+                side.reach(v, alt, u);
+                heap.push(v, alt + rest);
+            }
+        }
+        return null;
+    }
+
+    private static boolean has(long[] bits, int v) {
+        return (bits[v >>> 6] & (1L << v)) != 0;
+    }
+
+    private static void set(long[] bits, int v) {
+        bits[v >>> 6] |= 1L << v;
+    }
+
+    private static void clear(long[] bits, int v) {
+        bits[v >>> 6] &= ~(1L << v);
+    }
+
+    /**
+     * Returns whether p starts with the first i + 1 terminals of path.
+     */
+    private static boolean sharesRoot(Candidate p, Candidate path, int i) {
+        if (p.nodes.length <= i + 1)
+            return false;
+        for (int j = 0; j <= i; j++)
+            if (p.nodes[j] != path.nodes[j])
+                return false;
+        return true;
+    }
+
+    private static IntList root(Candidate path, int i) {
+        IntList nodes = new IntList();
+        for (int j = 0; j <= i; j++)
+            nodes.add(path.nodes[j]);
+        return nodes;
+    }
+
+    /**
+     * Appends the tree path from v to target to nodes.
+     */
+    private int[] chain(int v, IntList nodes) {
+        for (; v != -1; v = reverse.parent[v])
+            nodes.add(v);
+        return nodes.toArray();
+    }
+
+    /**
+     * Returns the time of the fastest arc from u to v.
+     */
+    private int arcTime(int u, int v) {
+        int best = INF;
+        for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++)
+            if (graph.targets[e] == v)
+                best = Math.min(best, graph.weights[e]);
+        return best;
+    }
+
+    /**
+     * Inserts c in time order, dropping candidates beyond the given limit
+     * since they can no longer be among the k fastest.
+     */
+    private static void insert(List<Candidate> candidates, Candidate c,
+            int limit) {
+        int low = 0;
+        int high = candidates.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (candidates.get(mid).time <= c.time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        candidates.add(low, c);
+        while (candidates.size() > limit)
+            candidates.remove(candidates.size() - 1);
+    }
+
+    private AirportBase.Path toPath(Candidate c) {
+        List<AirportBase.TerminalBase> route = new ArrayList<>(c.nodes.length);
+        for (int v : c.nodes)
+            route.add(graph.terminals[v]);
+        return new AirportBase.Path(route, c.time);
+    }
+
+    private static final class Candidate {
+
+        /* Terminal ids from source to target */
+        private final int[] nodes;
+        private final int time;
+
+        Candidate(int[] nodes, int time) {
+            this.nodes = nodes;
+            this.time = time;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Candidate
+                    && Arrays.equals(nodes, ((Candidate) o).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes);
+        }
+    }
+}
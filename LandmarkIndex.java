@@ -0,0 +1,152 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Landmark distance tables for goal-directed A* search (ALT).
+ *
+ * For each of K landmark terminals L the index stores the exact fastest
+ * time from L to every terminal and from every terminal to L. By the
+ * triangle inequality, d(L, t) - d(L, v) and d(v, L) - d(t, L) are both
+ * lower bounds on d(v, t), so the largest of them over all landmarks is a
+ * consistent A* potential towards the destination t.
+ */
+final class LandmarkIndex {
+
+    /**
+     * Strategies for choosing landmark terminals.
+     */
+    enum Selection {
+        /* Uniformly random terminals */
+        RANDOM,
+        /* Each landmark is the terminal farthest from those already chosen */
+        FARTHEST
+    }
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    /* Snapshot the tables were computed on */
+    final AirportGraph graph;
+    /* Terminal id of each landmark */
+    final int[] landmarks;
+    /* Time from landmark k to terminal v, at index k * size + v */
+    private final int[] from;
+    /* Time from terminal v to landmark k, at index k * size + v */
+    private final int[] to;
+
+    /**
+     * Chooses up to count landmarks on the given snapshot and computes their
+     * distance tables.
+     *
+     * @param graph network snapshot
+     * @param count number of landmarks to choose
+     * @param selection strategy for choosing landmarks
+     * @param seed seed for the random choices made by the strategy
+     */
+    LandmarkIndex(AirportGraph graph, int count, Selection selection,
+            long seed) {
+        this.graph = graph;
+        int n = graph.size;
+        int k = Math.max(0, Math.min(count, n));
+        Random random = new Random(seed);
+
+        landmarks = new int[k];
+        from = new int[k * n];
+        to = new int[k * n];
+
+        // Minimum time from any chosen landmark, used by FARTHEST
+        int[] nearest = new int[n];
+        Arrays.fill(nearest, INF);
+        boolean[] chosen = new boolean[n];
+
+        for (int i = 0; i < k; i++) {
+            int landmark;
+            if (selection == Selection.RANDOM || i == 0) {
+                do {
+                    landmark = random.nextInt(n);
+                } while (chosen[landmark]);
+            } else {
+                landmark = -1;
+                for (int v = 0; v < n; v++)
+                    if (!chosen[v] && (landmark < 0
+                            || nearest[v] > nearest[landmark]))
+                        landmark = v;
+            }
+            chosen[landmark] = true;
+            landmarks[i] = landmark;
+
+            int[] out = graph.distancesFrom(landmark, false);
+            int[] in = graph.distancesFrom(landmark, true);
+            System.arraycopy(out, 0, from, i * n, n);
+            System.arraycopy(in, 0, to, i * n, n);
+            for (int v = 0; v < n; v++)
+                nearest[v] = Math.min(nearest[v], out[v]);
+        }
+    }
+
+    /**
+     * Returns a lower bound on the fastest time from v to t.
+     *
+     * @param v id of the terminal the bound is for
+     * @param t id of the destination terminal
+     * @return lower bound on d(v, t), never negative
+     */
+    int lowerBound(int v, int t) {
+        int n = graph.size;
+        int best = 0;
+        for (int i = 0, base = 0; i < landmarks.length; i++, base += n) {
+            int lv = from[base + v];
+            int lt = from[base + t];
+            if (lv != INF && lt != INF && lt - lv > best)
+                best = lt - lv;
+            int vl = to[base + v];
+            int tl = to[base + t];
+            if (vl != INF && tl != INF && vl - tl > best)
+                best = vl - tl;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the fastest path from source to target using A* guided by the
+     * landmark lower bounds. The bounds are consistent, so a terminal's
+     * distance is final once it leaves the heap and the search stops when
+     * target is settled.
+     *
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @return path to target, or null if target is not reachable
+     */
+    AirportBase.Path fastestPath(int source, int target) {
+        AirportGraph g = graph;
+        Workspace w = Workspace.get(g.size);
+        Workspace.Side side = w.forward;
+        // The backward side memoizes each terminal's lower bound
+        Workspace.Side bounds = w.backward;
+        IndexedHeap heap = side.heap;
+
+        side.reach(source, 0, -1);
+        heap.push(source, lowerBound(source, target));
+
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            side.settle(u);
+            if (u == target)
+                return g.toPath(side.parent, target, side.dist[target]);
+
+            side.relaxed(g.offsets[u + 1] - g.offsets[u]);
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                int v = g.targets[e];
+                if (side.settled(v))
+                    continue;
+                int alt = side.dist[u] + g.weights[e];
+                if (alt >= side.distance(v))
+                    continue;
+                if (!bounds.reached(v))
+                    bounds.reach(v, lowerBound(v, target), -1);
+                side.reach(v, alt, u);
+                heap.push(v, alt + bounds.dist[v]);
+            }
+        }
+        return null;
+    }
+}
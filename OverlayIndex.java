@@ -0,0 +1,313 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Fastest-path routing on a partitioned network, in the style of
+ * customizable route planning.
+ *
+ * Terminals are split into cells by a caller-supplied key, such as the
+ * site they belong to. A terminal with a shuttle into another cell is a
+ * boundary terminal, and each cell stores the fastest times between all of
+ * its boundary terminals using only its own shuttles. A query searches the
+ * two endpoint cells shuttle by shuttle, but crosses every other cell in a
+ * single step along these precomputed times, so it touches the small
+ * overlay of boundary terminals instead of the whole network. Shortcuts on
+ * the result are unpacked afterwards with a search confined to their cell.
+ *
+ * Building the index for a new snapshot compares each cell with the same
+ * cell of the previous index and keeps its boundary times if none of its
+ * terminals or shuttles changed, so editing one site only re-customizes
+ * that site's cell.
+ */
+final class OverlayIndex {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    /* Snapshot the index was built on */
+    final AirportGraph graph;
+    /* Cell of each terminal, indexed by id */
+    private final int[] cellOf;
+    /* Position of each terminal among its cell's boundary, or -1 */
+    private final int[] boundaryIndex;
+    /* Cells in order of their first terminal */
+    private final Cell[] cells;
+    /* Cells whose boundary times had to be computed for this snapshot */
+    private final int customized;
+
+    /**
+     * Splits the snapshot into cells and computes or reuses their boundary
+     * times.
+     *
+     * @param graph network snapshot
+     * @param partition key of the cell each terminal belongs to
+     * @param previous index built on an earlier snapshot with the same
+     *                 partition, or null
+     */
+    OverlayIndex(AirportGraph graph,
+            Function<? super AirportBase.TerminalBase, ?> partition,
+            OverlayIndex previous) {
+        this.graph = graph;
+        int n = graph.size;
+        cellOf = new int[n];
+        boundaryIndex = new int[n];
+        Arrays.fill(boundaryIndex, -1);
+
+        Map<Object, Integer> cellIds = new HashMap<>();
+        List<Object> keys = new ArrayList<>();
+        for (int u = 0; u < n; u++) {
+            Object key = partition.apply(graph.terminals[u]);
+            Integer cell = cellIds.get(key);
+            if (cell == null) {
+                cell = keys.size();
+                cellIds.put(key, cell);
+                keys.add(key);
+            }
+            cellOf[u] = cell;
+        }
+
+        Map<Object, Cell> before = new HashMap<>();
+        if (previous != null)
+            for (Cell cell : previous.cells)
+                before.put(cell.key, cell);
+
+        List<IntList> members = new ArrayList<>(keys.size());
+        for (int c = 0; c < keys.size(); c++)
+            members.add(new IntList());
+        for (int u = 0; u < n; u++)
+            members.get(cellOf[u]).add(u);
+
+        Workspace.Side search = Workspace.get(n).forward;
+        cells = new Cell[keys.size()];
+        int built = 0;
+        for (int c = 0; c < cells.length; c++) {
+            Cell cell = new Cell(keys.get(c), members.get(c).toArray(), graph,
+                    cellOf);
+            Cell old = before.get(cell.key);
+            if (old != null && old.sameAs(cell)) {
+                cell.times = old.times;
+            } else {
+                cell.times = customize(cell, c, search);
+                built++;
+            }
+            for (int i = 0; i < cell.boundary.length; i++)
+                boundaryIndex[cell.boundary[i]] = i;
+            cells[c] = cell;
+        }
+        customized = built;
+    }
+
+    /**
+     * Returns the number of cells whose boundary times were computed rather
+     * than reused when this index was built.
+     *
+     * @return number of re-customized cells
+     */
+    int customizedCells() {
+        return customized;
+    }
+
+    int cellCount() {
+        return cells.length;
+    }
+
+    /**
+     * Computes the fastest times between all boundary terminals of a cell
+     * using only the cell's own shuttles.
+     */
+    private int[] customize(Cell cell, int c, Workspace.Side search) {
+        int k = cell.boundary.length;
+        int[] times = new int[k * k];
+        for (int i = 0; i < k; i++) {
+            confined(search, cell.boundary[i], -1, c);
+            for (int j = 0; j < k; j++)
+                times[i * k + j] = search.distance(cell.boundary[j]);
+        }
+        return times;
+    }
+
+    /**
+     * Returns the fastest path from source to target, searching the
+     * endpoint cells in full and every other cell through its boundary
+     * times.
+     *
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @return path to target, or null if target is not reachable
+     */
+    AirportBase.Path fastestPath(int source, int target) {
+        AirportGraph g = graph;
+        int sourceCell = cellOf[source];
+        int targetCell = cellOf[target];
+        Workspace w = Workspace.get(g.size);
+        // Shortcut parents are stored as -2 - u to tell them from shuttles
+        Workspace.Side side = w.forward;
+        IndexedHeap heap = side.heap;
+
+        side.reach(source, 0, -1);
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            side.settle(u);
+            if (u == target)
+                return unpack(side.parent, w.backward, target,
+                        side.dist[target]);
+
+            int cu = cellOf[u];
+            boolean local = cu == sourceCell || cu == targetCell;
+            side.relaxed(g.offsets[u + 1] - g.offsets[u]);
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                int v = g.targets[e];
+                if (side.settled(v) || (!local && cellOf[v] == cu))
+                    continue;
+                int alt = side.dist[u] + g.weights[e];
+                if (heap.push(v, alt))
+                    side.reach(v, alt, u);
+            }
+            if (local)
+                continue;
+
+            // Cross the cell along its precomputed boundary times
+            Cell cell = cells[cu];
+            int k = cell.boundary.length;
+            int row = boundaryIndex[u] * k;
+            side.relaxed(k);
+            for (int j = 0; j < k; j++) {
+                int v = cell.boundary[j];
+                int time = cell.times[row + j];
+                if (side.settled(v) || time == INF)
+                    continue;
+                int alt = side.dist[u] + time;
+                if (heap.push(v, alt))
+                    side.reach(v, alt, -2 - u);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds the path from the parent array, replacing each shortcut by the
+     * terminals of its path inside the cell.
+     */
+    private AirportBase.Path unpack(int[] parent, Workspace.Side search,
+            int target, int time) {
+        List<AirportBase.TerminalBase> route = new ArrayList<>();
+        for (int v = target; v != -1; ) {
+            route.add(graph.terminals[v]);
+            int p = parent[v];
+            if (p < -1) {
+                int from = -2 - p;
+                confined(search, from, v, cellOf[v]);
+                for (int w = search.parent[v]; w != from; w = search.parent[w])
+                    route.add(graph.terminals[w]);
+                p = from;
+            }
+            v = p;
+        }
+        Collections.reverse(route);
+        return new AirportBase.Path(route, time);
+    }
+
+    /**
+     * Runs Dijkstra from source within cell c, stopping early once target
+     * is settled if target is not -1.
+     */
+    private void confined(Workspace.Side side, int source, int target,
+            int c) {
+        AirportGraph g = graph;
+        IndexedHeap heap = side.heap;
+        side.reset(g.size);
+        side.reach(source, 0, -1);
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            if (u == target)
+                break;
+            side.settle(u);
+            side.relaxed(g.offsets[u + 1] - g.offsets[u]);
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                int v = g.targets[e];
+                if (cellOf[v] != c)
+                    continue;
+                int alt = side.dist[u] + g.weights[e];
+                if (alt >= side.distance(v))
+                    continue;
+                side.reach(v, alt, u);
+                heap.push(v, alt);
+            }
+        }
+    }
+
+    /**
+     * The terminals of one cell, the shuttles leaving them and the times
+     * between its boundary terminals.
+     */
+    private static final class Cell {
+
+        private final Object key;
+        /* Terminals of the cell, in id order */
+        private final AirportBase.TerminalBase[] terminals;
+        /* Number of slots of each terminal */
+        private final int[] degrees;
+        /* Far end and travel time of each slot of the terminals, in order */
+        private final AirportBase.TerminalBase[] slotTargets;
+        private final int[] slotTimes;
+        /* Ids of the boundary terminals in the snapshot, in id order */
+        private final int[] boundary;
+        /* Fastest time from boundary i to boundary j, at i * k + j */
+        private int[] times;
+
+        Cell(Object key, int[] members, AirportGraph g, int[] cellOf) {
+            this.key = key;
+            terminals = new AirportBase.TerminalBase[members.length];
+            degrees = new int[members.length];
+            IntList border = new IntList();
+            int slots = 0;
+            for (int i = 0; i < members.length; i++) {
+                int u = members[i];
+                terminals[i] = g.terminals[u];
+                degrees[i] = g.offsets[u + 1] - g.offsets[u];
+                slots += degrees[i];
+                for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                    if (cellOf[g.targets[e]] != cellOf[u]) {
+                        border.add(u);
+                        break;
+                    }
+                }
+            }
+            boundary = border.toArray();
+
+            slotTargets = new AirportBase.TerminalBase[slots];
+            slotTimes = new int[slots];
+            int i = 0;
+            for (int u : members) {
+                for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                    slotTargets[i] = g.terminals[g.targets[e]];
+                    slotTimes[i++] = g.times[e];
+                }
+            }
+        }
+
+        /**
+         * Returns whether the other cell, built on an earlier snapshot, has
+         * the same terminals and the same shuttles in the same order. If so
+         * its boundary times are still valid.
+         */
+        boolean sameAs(Cell other) {
+            if (!Arrays.equals(degrees, other.degrees)
+                    || !Arrays.equals(slotTimes, other.slotTimes))
+                return false;
+            for (int i = 0; i < terminals.length; i++)
+                if (terminals[i] != other.terminals[i])
+                    return false;
+            for (int i = 0; i < slotTargets.length; i++)
+                if (slotTargets[i] != other.slotTargets[i])
+                    return false;
+            return true;
+        }
+    }
+}
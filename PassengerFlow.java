@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maximum passenger throughput between two terminals, and the shuttles that
+ * limit it.
+ *
+ * Each shuttle is a single vehicle running back and forth, so it carries up
+ * to 'capacity' passengers in each direction once per round trip of
+ * 2 * time minutes. That gives every edge slot an hourly capacity, and the
+ * two slots of a shuttle act as each other's residual arcs. The maximum flow
+ * is computed with Dinic's algorithm on primitive arrays, and the saturated
+ * shuttles crossing the resulting minimum cut are the bottlenecks.
+ */
+final class PassengerFlow {
+
+    /* Snapshot the flow was computed on */
+    final AirportGraph graph;
+    /* Maximum number of passengers per hour from source to target */
+    final long maxFlow;
+    /* Terminals on the source side of the minimum cut */
+    final boolean[] sourceSide;
+    /* Hourly capacity of each edge slot */
+    private final long[] capacity;
+    /* Remaining hourly capacity of each edge slot */
+    private final long[] residual;
+
+    private PassengerFlow(AirportGraph graph, long maxFlow,
+            boolean[] sourceSide, long[] capacity, long[] residual) {
+        this.graph = graph;
+        this.maxFlow = maxFlow;
+        this.sourceSide = sourceSide;
+        this.capacity = capacity;
+        this.residual = residual;
+    }
+
+    /**
+     * Returns how many passengers per hour one shuttle can carry in each
+     * direction.
+     *
+     * @param capacity passengers per trip
+     * @param time one-way travel time, in minutes
+     * @return passengers per hour in each direction
+     */
+    static long hourlyCapacity(int capacity, int time) {
+        return 60L * capacity / (2L * Math.max(1, time));
+    }
+
+    /**
+     * Computes the maximum hourly passenger flow from source to target.
+     *
+     * @param g network snapshot
+     * @param source id of the terminal passengers start from
+     * @param target id of the terminal passengers travel to
+     * @param shuttleCapacity passengers per shuttle trip
+     * @return flow result, with a maxFlow of 0 if source equals target
+     */
+    static PassengerFlow compute(AirportGraph g, int source, int target,
+            int shuttleCapacity) {
+        int n = g.size;
+        int m = g.edgeCount();
+        long[] capacity = new long[m];
+        for (int e = 0; e < m; e++)
+            capacity[e] = hourlyCapacity(shuttleCapacity, g.times[e]);
+        long[] residual = capacity.clone();
+
+        int[] level = new int[n];
+        int[] queue = new int[n];
+        int[] current = new int[n];
+        int[] path = new int[n];
+        long total = 0;
+
+        while (levels(g, residual, source, target, level, queue)
+                && source != target) {
+            System.arraycopy(g.offsets, 0, current, 0, n);
+            total += blockingFlow(g, residual, source, target, level, current,
+                    path);
+        }
+
+        // After the last phase the source side of the minimum cut is
+        // exactly the set of terminals the BFS could still reach.
+        boolean[] sourceSide = new boolean[n];
+        for (int v = 0; v < n; v++)
+            sourceSide[v] = level[v] >= 0;
+        return new PassengerFlow(g, total, sourceSide, capacity, residual);
+    }
+
+    /**
+     * Builds the BFS level graph over edges with residual capacity.
+     *
+     * @return true if target is still reachable
+     */
+    private static boolean levels(AirportGraph g, long[] residual, int source,
+            int target, int[] level, int[] queue) {
+        Arrays.fill(level, -1);
+        int head = 0;
+        int tail = 0;
+        level[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                int v = g.targets[e];
+                if (residual[e] > 0 && level[v] < 0) {
+                    level[v] = level[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return level[target] >= 0;
+    }
+
+    /**
+     * Saturates every source-target path in the level graph, walking paths
+     * iteratively with a current-arc pointer per terminal.
+     *
+     * @return flow added in this phase
+     */
+    private static long blockingFlow(AirportGraph g, long[] residual,
+            int source, int target, int[] level, int[] current, int[] path) {
+        long added = 0;
+        int depth = 0;
+        int u = source;
+        while (true) {
+            if (u == target) {
+                long push = Long.MAX_VALUE;
+                for (int i = 0; i < depth; i++)
+                    push = Math.min(push, residual[path[i]]);
+                int retreat = depth;
+                for (int i = depth - 1; i >= 0; i--) {
+                    int e = path[i];
+                    residual[e] -= push;
+                    residual[g.twins[e]] += push;
+                    if (residual[e] == 0)
+                        retreat = i;
+                }
+                added += push;
+                depth = retreat;
+                u = depth == 0 ? source : g.targets[path[depth - 1]];
+                continue;
+            }
+
+            int e = current[u];
+            int end = g.offsets[u + 1];
+            while (e < end && (residual[e] == 0
+                    || level[g.targets[e]] != level[u] + 1))
+                e++;
+            current[u] = e;
+
+            if (e < end) {
+                path[depth++] = e;
+                u = g.targets[e];
+            } else {
+                // Dead end: drop u from the level graph and back up
+                level[u] = -1;
+                if (depth == 0)
+                    return added;
+                int back = path[--depth];
+                u = g.targets[g.twins[back]];
+                current[u]++;
+            }
+        }
+    }
+
+    /**
+     * Returns the hourly passenger flow along the given edge slot.
+     *
+     * @param slot edge slot of the snapshot
+     * @return passengers per hour travelling along the slot, 0 if the flow
+     * runs the other way
+     */
+    long flow(int slot) {
+        return Math.max(0, capacity[slot] - residual[slot]);
+    }
+
+    /**
+     * Returns the shuttles crossing the minimum cut from the source side to
+     * the target side. Together they limit the throughput to maxFlow.
+     *
+     * @return bottleneck shuttles
+     */
+    List<AirportBase.ShuttleBase> bottlenecks() {
+        List<AirportBase.ShuttleBase> result = new ArrayList<>();
+        for (int u = 0; u < graph.size; u++) {
+            if (!sourceSide[u])
+                continue;
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++)
+                if (!sourceSide[graph.targets[e]] && capacity[e] > 0)
+                    result.add(graph.shuttles[e]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "PassengerFlow{maxFlow=" + maxFlow + "/h, bottlenecks="
+                + bottlenecks().size() + "}";
+    }
+}
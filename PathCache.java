@@ -0,0 +1,193 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * A bounded least-recently-used cache of path query results, keyed by
+ * (origin, destination, query type).
+ *
+ * Every entry is stamped with the airport version it was computed at. An
+ * entry from an older version is treated as a miss and recomputed, so
+ * mutations never have to walk the cache. Each entry keeps its own copy
+ * of the path and every hit gets a fresh copy, so a caller that modifies
+ * the Path it was given cannot corrupt later hits.
+ */
+public final class PathCache {
+
+    /**
+     * Path query types that are cached separately.
+     */
+    public enum Query {
+        SHORTEST,
+        FASTEST
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+    private long stale;
+    private long evictions;
+
+    /**
+     * Creates an empty cache holding at most capacity paths.
+     *
+     * @param capacity maximum number of cached paths
+     */
+    PathCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Cache capacity must be "
+                    + "positive: " + capacity);
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= PathCache.this.capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of the given query if it is still current,
+     * otherwise runs the search and caches its result. Unreachable
+     * destinations are cached as null like any other result.
+     *
+     * @param origin the starting terminal
+     * @param destination the destination terminal
+     * @param query type of path query
+     * @param version current airport version
+     * @param search search to run on a miss
+     * @return path from origin to destination, or null if unreachable
+     */
+    AirportBase.Path get(AirportBase.TerminalBase origin,
+            AirportBase.TerminalBase destination, Query query, long version,
+            BiFunction<AirportBase.TerminalBase, AirportBase.TerminalBase,
+                    AirportBase.Path> search) {
+        Key key = new Key(origin, destination, query);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == version) {
+                hits++;
+                return copy(entry.path);
+            }
+            misses++;
+            if (entry != null)
+                stale++;
+        }
+
+        AirportBase.Path path = search.apply(origin, destination);
+        synchronized (this) {
+            entries.put(key, new Entry(copy(path), version));
+        }
+        return path;
+    }
+
+    private static AirportBase.Path copy(AirportBase.Path path) {
+        if (path == null)
+            return null;
+        return new AirportBase.Path(new ArrayList<>(path.terminals),
+                path.time);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Returns how many misses found an entry from an older airport version.
+     *
+     * @return number of stale lookups
+     */
+    public synchronized long staleMisses() {
+        return stale;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the fraction of lookups answered from the cache.
+     *
+     * @return hit rate between 0 and 1, or 0 if nothing was looked up yet
+     */
+    public synchronized double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Removes all entries and resets the counters.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        stale = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PathCache{size=" + entries.size() + "/" + capacity
+                + ", hits=" + hits + ", misses=" + misses + ", stale=" + stale
+                + ", evictions=" + evictions + "}";
+    }
+
+    private static final class Key {
+
+        private final AirportBase.TerminalBase origin;
+        private final AirportBase.TerminalBase destination;
+        private final Query query;
+
+        Key(AirportBase.TerminalBase origin,
+                AirportBase.TerminalBase destination, Query query) {
+            this.origin = origin;
+            this.destination = destination;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return origin == other.origin && destination == other.destination
+                    && query == other.query;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * System.identityHashCode(origin)
+                    + System.identityHashCode(destination)) * 2
+                    + query.ordinal();
+        }
+    }
+
+    private static final class Entry {
+
+        private final AirportBase.Path path;
+        private final long version;
+
+        Entry(AirportBase.Path path, long version) {
+            this.path = path;
+            this.version = version;
+        }
+    }
+}
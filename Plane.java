@@ -5,10 +5,22 @@ public class Plane extends PlaneBase {
     }
 
     public int getIntTime() {
-        StringBuilder sb = new StringBuilder(this.getTime());
-        sb.deleteCharAt(2);
-        String resultString = sb.toString();
-        return Integer.parseInt(resultString);
+        return toIntTime(this.getTime());
+    }
+
+    /**
+     * Converts a time written as "H:MM" or "HH:MM" to the number HHMM, so
+     * that "9:24" becomes 924 and "13:05" becomes 1305.
+     *
+     * @param time time of day with the hours and minutes split by ':'
+     * @return hours times 100 plus minutes
+     */
+    static int toIntTime(String time) {
+        int colon = time.indexOf(':');
+        if (colon < 0)
+            throw new NumberFormatException("Time has no ':': " + time);
+        return Integer.parseInt(time.substring(0, colon)) * 100
+                + Integer.parseInt(time.substring(colon + 1));
     }
 
     @Override
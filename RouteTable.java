@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Precomputed all-pairs routes for a network snapshot.
+ *
+ * For every destination t the table stores, for each terminal u, the
+ * fastest time from u to t and the edge slot at u that starts that route,
+ * plus the first edge slot of a route to t with the fewest shuttles. Both
+ * queries then become walks along next-hop slots, costing O(path length).
+ *
+ * Rows are indexed by destination so that each per-destination search,
+ * run backwards from t, fills one contiguous row. The rows are computed in
+ * parallel on a ForkJoinPool.
+ */
+final class RouteTable {
+
+    private static final int INF = Integer.MAX_VALUE;
+    /* Destinations handled by one leaf task */
+    private static final int BATCH = 16;
+
+    /* Snapshot the table was computed on */
+    final AirportGraph graph;
+    /* Fastest time from u to t, at index t * size + u */
+    private final int[] dist;
+    /* First edge slot of the fastest route from u to t, or -1 */
+    private final int[] fastestNext;
+    /* First edge slot of a fewest-shuttles route from u to t, or -1 */
+    private final int[] shortestNext;
+
+    /**
+     * Computes the route table for the given snapshot.
+     *
+     * @param graph network snapshot
+     * @param pool pool to run the per-destination searches on
+     * @throws IllegalArgumentException if the airport has too many terminals
+     * for its table to fit in an array
+     */
+    RouteTable(AirportGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        long cells = (long) graph.size * graph.size;
+        if (cells > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Airport with " + graph.size
+                    + " terminals is too large for a route table");
+
+        dist = new int[(int) cells];
+        fastestNext = new int[(int) cells];
+        shortestNext = new int[(int) cells];
+        pool.invoke(new Rows(0, graph.size));
+    }
+
+    /**
+     * Returns the fastest time from source to target.
+     *
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @return fastest time, or Integer.MAX_VALUE if target is not reachable
+     */
+    int distance(int source, int target) {
+        return dist[target * graph.size + source];
+    }
+
+    AirportBase.Path fastestPath(int source, int target) {
+        return walk(fastestNext, source, target);
+    }
+
+    AirportBase.Path shortestPath(int source, int target) {
+        return walk(shortestNext, source, target);
+    }
+
+    private AirportBase.Path walk(int[] next, int source, int target) {
+        int row = target * graph.size;
+        if (source != target && next[row + source] < 0)
+            return null;
+
+        List<AirportBase.TerminalBase> route = new ArrayList<>();
+        int time = 0;
+        int u = source;
+        route.add(graph.terminals[u]);
+        while (u != target) {
+            int e = next[row + u];
+            time += graph.weights[e];
+            u = graph.targets[e];
+            route.add(graph.terminals[u]);
+        }
+        return new AirportBase.Path(route, time);
+    }
+
+    /**
+     * Fills the rows of a range of destinations, splitting the range until
+     * it is small enough to run sequentially with one set of scratch arrays.
+     */
+    private final class Rows extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Rows(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Rows(from, mid), new Rows(mid, to));
+                return;
+            }
+
+            int n = graph.size;
+            boolean[] settled = new boolean[n];
+            int[] queue = new int[n];
+            IndexedHeap heap = new IndexedHeap(n);
+            for (int t = from; t < to; t++) {
+                fastestRow(t, settled, heap);
+                shortestRow(t, queue);
+            }
+        }
+
+        /**
+         * Dijkstra backwards from t. Relaxing slot e of x into y means the
+         * route from y to t starts along the twin of e.
+         */
+        private void fastestRow(int t, boolean[] settled, IndexedHeap heap) {
+            int n = graph.size;
+            int row = t * n;
+            Arrays.fill(dist, row, row + n, INF);
+            Arrays.fill(fastestNext, row, row + n, -1);
+            Arrays.fill(settled, false);
+
+            dist[row + t] = 0;
+            heap.push(t, 0);
+            while (!heap.isEmpty()) {
+                int x = heap.poll();
+                settled[x] = true;
+                for (int e = graph.offsets[x]; e < graph.offsets[x + 1]; e++) {
+                    int y = graph.targets[e];
+                    if (settled[y])
+                        continue;
+                    int alt = dist[row + x] + graph.reverseWeight(e);
+                    if (heap.push(y, alt)) {
+                        dist[row + y] = alt;
+                        fastestNext[row + y] = graph.twins[e];
+                    }
+                }
+            }
+        }
+
+        private void shortestRow(int t, int[] queue) {
+            int n = graph.size;
+            int row = t * n;
+            Arrays.fill(shortestNext, row, row + n, -1);
+
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = t;
+            while (head < tail) {
+                int x = queue[head++];
+                for (int e = graph.offsets[x]; e < graph.offsets[x + 1]; e++) {
+                    int y = graph.targets[e];
+                    if (y != t && shortestNext[row + y] < 0) {
+                        shortestNext[row + y] = graph.twins[e];
+                        queue[tail++] = y;
+                    }
+                }
+            }
+        }
+    }
+}
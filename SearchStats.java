@@ -0,0 +1,260 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Search counters and latency histograms for the path queries of an
+ * airport, kept per query type.
+ *
+ * The counters come from the calling thread's Workspace, whose sides and
+ * heaps keep running totals at all times; a query's counts are the change
+ * in those totals while it ran. They therefore cover the searches that use
+ * the workspace, including any index the query had to rebuild first, which
+ * is usually what explains an outlier. Every search counts the same way:
+ * SETTLED is the number of terminals whose distance became final, and
+ * RELAXED the number of arcs examined from them, whether or not an arc
+ * improved a distance. Breadth-first searches settle a terminal when they
+ * reach it, and the connection scan of findEarliestArrival counts each
+ * connection it examines as an arc. Latencies go into a log-linear
+ * histogram of eight sub-buckets per power of two, so percentiles are
+ * within 12.5% of the true value, and recording one is a few atomic
+ * increments.
+ *
+ * The workspace counters are always on, whether or not any airport has
+ * instrumentation enabled. Each is a plain long field of a thread-confined
+ * object, bumped once per heap operation or settled terminal next to
+ * writes the search makes anyway, so there is no atomic, branch or shared
+ * cache line to pay for; gating them on a flag would cost a branch of its
+ * own. Disabled instrumentation therefore costs the airport's null check
+ * on the stats and these increments, which are lost in the noise of a
+ * search.
+ */
+public final class SearchStats {
+
+    /**
+     * Instrumented query types.
+     */
+    public enum Query {
+        SHORTEST,
+        FASTEST,
+        ALTERNATIVES,
+        EARLIEST_ARRIVAL
+    }
+
+    /* Indexes of the search counters */
+    public static final int SETTLED = 0;
+    public static final int RELAXED = 1;
+    public static final int PUSHES = 2;
+    public static final int POLLS = 3;
+    public static final int DECREASES = 4;
+    public static final int COUNTERS = 5;
+
+    /* Sub-buckets per power of two, as a number of bits */
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    /*
+     * Workspace totals before the running query, the last query's own
+     * counts, and the totals after it
+     */
+    private static final ThreadLocal<long[]> SCRATCH =
+            ThreadLocal.withInitial(() -> new long[3 * COUNTERS]);
+
+    private final Recorder[] recorders = new Recorder[Query.values().length];
+
+    SearchStats() {
+        for (int q = 0; q < recorders.length; q++)
+            recorders[q] = new Recorder();
+    }
+
+    /**
+     * Marks the start of a query on the calling thread.
+     *
+     * @return start time to pass to finish
+     */
+    long start() {
+        Workspace.current().readCounters(SCRATCH.get(), 0);
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a query that started at the given time on the calling thread.
+     *
+     * @param query type of the query
+     * @param start value returned by start
+     */
+    void finish(Query query, long start) {
+        long nanos = System.nanoTime() - start;
+        long[] scratch = SCRATCH.get();
+        Workspace.current().readCounters(scratch, 2 * COUNTERS);
+        Recorder recorder = recorders[query.ordinal()];
+        for (int i = 0; i < COUNTERS; i++) {
+            scratch[COUNTERS + i] = scratch[2 * COUNTERS + i] - scratch[i];
+            recorder.totals.addAndGet(i, scratch[COUNTERS + i]);
+        }
+        recorder.record(nanos);
+    }
+
+    /**
+     * Returns the counters of the last query finished on the calling
+     * thread, indexed by SETTLED, RELAXED, PUSHES, POLLS and DECREASES.
+     *
+     * @return counts of the last query, all zero if there was none
+     */
+    public long[] lastQuery() {
+        long[] scratch = SCRATCH.get();
+        long[] counts = new long[COUNTERS];
+        System.arraycopy(scratch, COUNTERS, counts, 0, COUNTERS);
+        return counts;
+    }
+
+    /**
+     * Returns a copy of the statistics of one query type.
+     *
+     * @param query type of query
+     * @return statistics recorded since creation or the last reset
+     */
+    public Snapshot snapshot(Query query) {
+        Recorder recorder = recorders[query.ordinal()];
+        long[] buckets = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++)
+            buckets[b] = recorder.buckets.get(b);
+        long[] totals = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++)
+            totals[i] = recorder.totals.get(i);
+        return new Snapshot(query, buckets, totals, recorder.max.get());
+    }
+
+    /**
+     * Clears the statistics of every query type. Queries finishing during
+     * the reset may be partly counted.
+     */
+    public void reset() {
+        for (Recorder recorder : recorders) {
+            for (int b = 0; b < BUCKETS; b++)
+                recorder.buckets.set(b, 0);
+            for (int i = 0; i < COUNTERS; i++)
+                recorder.totals.set(i, 0);
+            recorder.max.set(0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SearchStats{");
+        for (Query query : Query.values()) {
+            Snapshot snapshot = snapshot(query);
+            if (snapshot.count() > 0)
+                sb.append("\n  ").append(snapshot);
+        }
+        return sb.append("}").toString();
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB)
+            return (int) Math.max(nanos, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return (exponent - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /**
+     * Returns the largest latency that falls into the given bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB)
+            return bucket;
+        int shift = bucket / SUB - 1;
+        long lower = (long) (SUB + bucket % SUB) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    private static final class Recorder {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLongArray totals = new AtomicLongArray(COUNTERS);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            buckets.incrementAndGet(bucket(nanos));
+            long seen = max.get();
+            while (nanos > seen && !max.compareAndSet(seen, nanos))
+                seen = max.get();
+        }
+    }
+
+    /**
+     * Statistics of one query type at the time they were copied.
+     */
+    public static final class Snapshot {
+
+        public final Query query;
+        private final long[] buckets;
+        private final long[] totals;
+        private final long max;
+        private final long count;
+
+        private Snapshot(Query query, long[] buckets, long[] totals,
+                long max) {
+            this.query = query;
+            this.buckets = buckets;
+            this.totals = totals;
+            this.max = max;
+            long sum = 0;
+            for (long c : buckets)
+                sum += c;
+            this.count = sum;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns the total of one counter over all recorded queries.
+         *
+         * @param counter SETTLED, RELAXED, PUSHES, POLLS or DECREASES
+         * @return sum of the counter
+         */
+        public long total(int counter) {
+            return totals[counter];
+        }
+
+        /**
+         * Returns the latency below which the given share of the queries
+         * finished, rounded up to the end of its histogram bucket.
+         *
+         * @param percentile share of queries, from 0 to 100
+         * @return latency in nanoseconds, or 0 if nothing was recorded
+         */
+        public long percentile(double percentile) {
+            if (percentile < 0 || percentile > 100)
+                throw new IllegalArgumentException("Percentile must be "
+                        + "between 0 and 100: " + percentile);
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= rank)
+                    return Math.min(upperBound(b), max);
+            }
+            return 0;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            double n = Math.max(count, 1);
+            return String.format("%s: %d queries, p50=%dus p90=%dus "
+                    + "p99=%dus max=%dus, per query %.1f settled, %.1f relaxed,"
+                    + " %.1f pushes, %.1f polls, %.1f decrease-keys", query,
+                    count, percentile(50) / 1000, percentile(90) / 1000,
+                    percentile(99) / 1000, max / 1000, totals[SETTLED] / n,
+                    totals[RELAXED] / n, totals[PUSHES] / n, totals[POLLS] / n,
+                    totals[DECREASES] / n);
+        }
+    }
+}
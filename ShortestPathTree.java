@@ -0,0 +1,154 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The result of a single-source search: a distance and a predecessor for
+ * every terminal, indexed by the dense ids of the snapshot it was computed
+ * on. Paths to individual destinations are only materialised on request,
+ * so one search can feed any number of lookups.
+ */
+final class ShortestPathTree {
+
+    /* Value of distance and time for terminals the origin cannot reach */
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /* Snapshot the tree was computed on */
+    final AirportGraph graph;
+    /* Id of the origin terminal */
+    final int source;
+    /* Tree metric of each terminal: travel time, or shuttle count */
+    final int[] dist;
+    /* Predecessor of each terminal on its tree path, -1 for the origin */
+    final int[] parent;
+    /* Total travelling and waiting time along each terminal's tree path */
+    final int[] time;
+
+    private ShortestPathTree(AirportGraph graph, int source, int[] dist,
+            int[] parent, int[] time) {
+        this.graph = graph;
+        this.source = source;
+        this.dist = dist;
+        this.parent = parent;
+        this.time = time;
+    }
+
+    /**
+     * Computes the tree of fastest paths out of source with Dijkstra's
+     * algorithm.
+     *
+     * @param g network snapshot
+     * @param source id of the origin terminal
+     * @return tree whose dist and time are both the fastest travel time
+     */
+    static ShortestPathTree fastest(AirportGraph g, int source) {
+        int n = g.size;
+        int[] dist = new int[n];
+        int[] parent = new int[n];
+        boolean[] settled = new boolean[n];
+        IndexedHeap heap = new IndexedHeap(n);
+        Arrays.fill(dist, UNREACHABLE);
+        Arrays.fill(parent, -1);
+
+        dist[source] = 0;
+        heap.push(source, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            settled[u] = true;
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++) {
+                int v = g.targets[e];
+                if (settled[v])
+                    continue;
+                int alt = dist[u] + g.weights[e];
+                if (heap.push(v, alt)) {
+                    dist[v] = alt;
+                    parent[v] = u;
+                }
+            }
+        }
+        return new ShortestPathTree(g, source, dist, parent, dist);
+    }
+
+    /**
+     * Computes the tree of fastest paths out of source with parallel
+     * delta-stepping.
+     *
+     * @param g network snapshot
+     * @param source id of the origin terminal
+     * @param delta bucket width, in minutes
+     * @param pool pool to run the relaxations on
+     * @return tree whose dist and time are both the fastest travel time
+     */
+    static ShortestPathTree fastest(AirportGraph g, int source, int delta,
+            ForkJoinPool pool) {
+        int[] dist = new int[g.size];
+        int[] parent = new int[g.size];
+        DeltaStepping.run(g, source, delta, pool, dist, parent);
+        return new ShortestPathTree(g, source, dist, parent, dist);
+    }
+
+    /**
+     * Computes a tree of paths with the fewest shuttles out of source with
+     * direction-optimizing breadth-first search.
+     *
+     * @param g network snapshot
+     * @param source id of the origin terminal
+     * @return tree whose dist is the shuttle count and whose time is the
+     * travel time along the tree path
+     */
+    static ShortestPathTree fewestShuttles(AirportGraph g, int source) {
+        int n = g.size;
+        int[] hops = new int[n];
+        int[] parent = new int[n];
+        int[] time = new int[n];
+        FrontierBfs.search(g, source, -1, parent, time, hops);
+        return new ShortestPathTree(g, source, hops, parent, time);
+    }
+
+    /**
+     * Returns the number of terminals covered by the tree's arrays.
+     *
+     * @return number of terminals
+     */
+    int size() {
+        return graph.size;
+    }
+
+    /**
+     * Returns the index of the given terminal in the tree's arrays.
+     *
+     * @param terminal terminal to look up
+     * @return id of the terminal, or -1 if it was not in the airport
+     */
+    int idOf(AirportBase.TerminalBase terminal) {
+        return graph.idOf(terminal);
+    }
+
+    AirportBase.TerminalBase terminal(int id) {
+        return graph.terminals[id];
+    }
+
+    /**
+     * Returns the path from the origin to the given terminal, built from the
+     * predecessor array.
+     *
+     * @param destination the destination terminal
+     * @return Path to destination, or null if it is not reachable or not in
+     * the airport
+     */
+    AirportBase.Path pathTo(AirportBase.TerminalBase destination) {
+        int target = graph.idOf(destination);
+        if (target < 0 || dist[target] == UNREACHABLE)
+            return null;
+        return graph.toPath(parent, target, time[target]);
+    }
+
+    @Override
+    public String toString() {
+        int reached = 0;
+        for (int d : dist)
+            if (d != UNREACHABLE)
+                reached++;
+        return "ShortestPathTree{origin=" + graph.terminals[source]
+                + ", reached=" + reached + "/" + graph.size + "}";
+    }
+}
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Binary on-disk form of an airport's shuttle network, laid out so that it
+ * can be memory-mapped and copied straight into a CSR snapshot.
+ *
+ * All values are little-endian. After a header of six ints (magic, format
+ * version, shuttle capacity, terminal count n, edge slot count m and string
+ * pool length) come the int arrays waits[n], offsets[n + 1], targets[m],
+ * times[m], twins[m] and the terminal id table poolOffsets[n + 1], then a
+ * bitset of (m + 63) / 64 longs marking the slots that sit at their
+ * shuttle's origin, and finally the UTF-8 string pool holding every
+ * terminal id back to back.
+ *
+ * Loading allocates one object per terminal and none per shuttle: the CSR
+ * arrays are bulk-copied out of the mapping, and shuttle objects are only
+ * created by unpack() once something needs them.
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x4150534e;
+    private static final int FORMAT = 1;
+    private static final int HEADER_INTS = 6;
+
+    /* Shuttle capacity of the airport the file was written from */
+    final int capacity;
+    /* Snapshot over the file's arrays, with its shuttles array still empty */
+    final AirportGraph graph;
+    /* Bit e is set if edge slot e sits at its shuttle's origin */
+    private final long[] originSlots;
+
+    private SnapshotFile(int capacity, AirportGraph graph, long[] originSlots) {
+        this.capacity = capacity;
+        this.graph = graph;
+        this.originSlots = originSlots;
+    }
+
+    /**
+     * Writes the given snapshot to a file, replacing any existing one.
+     *
+     * @param g network snapshot whose shuttles array is filled in
+     * @param capacity shuttle capacity of the airport
+     * @param file file to write
+     * @throws IOException if the file cannot be written or the network is
+     * too large for one mapping
+     */
+    static void write(AirportGraph g, int capacity, Path file)
+            throws IOException {
+        int n = g.size;
+        int m = g.edgeCount();
+        byte[][] names = new byte[n][];
+        int[] poolOffsets = new int[n + 1];
+        long pool = 0;
+        for (int u = 0; u < n; u++) {
+            names[u] = g.terminals[u].getId().getBytes(StandardCharsets.UTF_8);
+            pool += names[u].length;
+            if (pool > Integer.MAX_VALUE)
+                throw new IOException("Terminal ids do not fit in a snapshot");
+            poolOffsets[u + 1] = (int) pool;
+        }
+        long[] originSlots = new long[(m + 63) >>> 6];
+        for (int u = 0; u < n; u++)
+            for (int e = g.offsets[u]; e < g.offsets[u + 1]; e++)
+                if (g.shuttles[e].getOrigin() == g.terminals[u])
+                    originSlots[e >>> 6] |= 1L << e;
+
+        long length = dataOffset(n, m) + pool;
+        if (length > Integer.MAX_VALUE)
+            throw new IOException("Airport is too large for a snapshot");
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+                    0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer ints = buffer.asIntBuffer();
+            ints.put(MAGIC).put(FORMAT).put(capacity).put(n).put(m)
+                    .put((int) pool);
+            ints.put(g.waits).put(g.offsets).put(g.targets).put(g.times)
+                    .put(g.twins).put(poolOffsets);
+            buffer.position((int) bitsOffset(n, m));
+            buffer.asLongBuffer().put(originSlots);
+            buffer.position((int) dataOffset(n, m));
+            for (byte[] name : names)
+                buffer.put(name);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Maps a snapshot file and builds a CSR snapshot and terminals from it.
+     *
+     * @param file file written by write()
+     * @return the loaded snapshot, at airport version 0
+     * @throws IOException if the file cannot be read or is not a valid
+     * snapshot
+     */
+    static SnapshotFile read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < 4L * HEADER_INTS || length > Integer.MAX_VALUE)
+                throw new IOException(file + " is not an airport snapshot");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer ints = buffer.asIntBuffer();
+            if (ints.get() != MAGIC || ints.get() != FORMAT)
+                throw new IOException(file + " is not an airport snapshot");
+            int capacity = ints.get();
+            int n = ints.get();
+            int m = ints.get();
+            int pool = ints.get();
+            if (n < 0 || m < 0 || pool < 0
+                    || dataOffset(n, m) + pool != length)
+                throw new IOException(file + " is truncated or corrupt");
+
+            if (m % 2 != 0)
+                throw new IOException(file + " is truncated or corrupt");
+            int[] waits = new int[n];
+            int[] offsets = new int[n + 1];
+            int[] targets = new int[m];
+            int[] times = new int[m];
+            int[] twins = new int[m];
+            int[] poolOffsets = new int[n + 1];
+            ints.get(waits).get(offsets).get(targets).get(times).get(twins)
+                    .get(poolOffsets);
+            long[] originSlots = new long[(m + 63) >>> 6];
+            buffer.position((int) bitsOffset(n, m));
+            buffer.asLongBuffer().get(originSlots);
+            String problem = validate(waits, offsets, targets, times, twins,
+                    poolOffsets, originSlots, pool);
+            if (problem != null)
+                throw new IOException(file + " is corrupt: " + problem);
+
+            AirportBase.TerminalBase[] terminals =
+                    new AirportBase.TerminalBase[n];
+            buffer.position((int) dataOffset(n, m));
+            ByteBuffer names = buffer.slice();
+            byte[] scratch = new byte[64];
+            for (int u = 0; u < n; u++) {
+                int len = poolOffsets[u + 1] - poolOffsets[u];
+                if (len > scratch.length)
+                    scratch = new byte[Math.max(len, 2 * scratch.length)];
+                names.get(scratch, 0, len);
+                terminals[u] = new Airport.Terminal(new String(scratch, 0, len,
+                        StandardCharsets.UTF_8), waits[u]);
+            }
+            return new SnapshotFile(capacity, new AirportGraph(terminals,
+                    waits, offsets, targets, times, twins, 0), originSlots);
+        }
+    }
+
+    /**
+     * Checks that the arrays read from a file describe a well-formed
+     * network, so that a corrupt file fails to load rather than failing
+     * later inside a search.
+     *
+     * @return description of the first problem found, or null if none
+     */
+    private static String validate(int[] waits, int[] offsets, int[] targets,
+            int[] times, int[] twins, int[] poolOffsets, long[] originSlots,
+            int pool) {
+        int n = waits.length;
+        int m = targets.length;
+        if (offsets[0] != 0 || offsets[n] != m)
+            return "edge offsets do not span the edge slots";
+        if (poolOffsets[0] != 0 || poolOffsets[n] != pool)
+            return "id offsets do not span the string pool";
+        int[] owner = new int[m];
+        for (int u = 0; u < n; u++) {
+            if (waits[u] < 0)
+                return "terminal " + u + " has a negative waiting time";
+            if (offsets[u + 1] < offsets[u] || offsets[u + 1] > m)
+                return "edge offsets out of order at terminal " + u;
+            if (poolOffsets[u + 1] < poolOffsets[u]
+                    || poolOffsets[u + 1] > pool)
+                return "id offsets out of order at terminal " + u;
+            for (int e = offsets[u]; e < offsets[u + 1]; e++)
+                owner[e] = u;
+        }
+        for (int e = 0; e < m; e++) {
+            int twin = twins[e];
+            if (targets[e] < 0 || targets[e] >= n)
+                return "edge slot " + e + " has target " + targets[e];
+            if (times[e] < 0)
+                return "edge slot " + e + " has a negative time";
+            if (twin < 0 || twin >= m || twin == e || twins[twin] != e)
+                return "edge slot " + e + " has twin " + twin;
+            if (owner[twin] != targets[e] || targets[twin] != owner[e]
+                    || times[twin] != times[e])
+                return "edge slot " + e + " does not match its twin";
+            boolean origin = (originSlots[e >>> 6] & (1L << e)) != 0;
+            boolean twinOrigin = (originSlots[twin >>> 6] & (1L << twin)) != 0;
+            if (origin == twinOrigin && owner[e] != targets[e])
+                return "edge slot " + e + " has no single origin end";
+        }
+        return null;
+    }
+
+    /**
+     * Creates the shuttle objects of the snapshot, storing them in the given
+     * array by edge slot, and returns the adjacency lists they form, in the
+     * same order as the edge slots. The snapshot itself is not modified;
+     * the caller publishes graph.withShuttles(shuttles) in its place.
+     *
+     * @param shuttles array of edgeCount() entries to fill
+     * @return incident shuttles of every terminal, in id order
+     */
+    LinkedHashMap<AirportBase.TerminalBase,
+            ArrayList<AirportBase.ShuttleBase>> unpack(
+                    AirportBase.ShuttleBase[] shuttles) {
+        AirportGraph g = graph;
+        LinkedHashMap<AirportBase.TerminalBase,
+                ArrayList<AirportBase.ShuttleBase>> adjacency =
+                new LinkedHashMap<>(2 * g.size);
+        for (int u = 0; u < g.size; u++) {
+            int e = g.offsets[u];
+            int end = g.offsets[u + 1];
+            ArrayList<AirportBase.ShuttleBase> list =
+                    new ArrayList<>(end - e);
+            for (; e < end; e++) {
+                int twin = g.twins[e];
+                if (twin < e) {
+                    list.add(shuttles[twin]);
+                    continue;
+                }
+                int v = g.targets[e];
+                boolean atOrigin = (originSlots[e >>> 6] & (1L << e)) != 0;
+                int origin = atOrigin ? u : v;
+                int destination = atOrigin ? v : u;
+                int originSlot = atOrigin ? e : twin;
+                int destinationSlot = atOrigin ? twin : e;
+                Airport.Shuttle shuttle = new Airport.Shuttle(
+                        g.terminals[origin], g.terminals[destination],
+                        g.times[e]);
+                shuttle.originSlot = originSlot - g.offsets[origin];
+                shuttle.destinationSlot =
+                        destinationSlot - g.offsets[destination];
+                shuttles[e] = shuttle;
+                shuttles[twin] = shuttle;
+                list.add(shuttle);
+            }
+            adjacency.put(g.terminals[u], list);
+        }
+        return adjacency;
+    }
+
+    /**
+     * Returns the byte offset of the origin bitset.
+     */
+    private static long bitsOffset(int n, int m) {
+        long ints = HEADER_INTS + 2L * (n + 1) + n + 3L * m;
+        // Keep the longs 8-byte aligned
+        return (4 * ints + 7) & ~7L;
+    }
+
+    /**
+     * Returns the byte offset of the string pool.
+     */
+    private static long dataOffset(int n, int m) {
+        return bitsOffset(n, m) + 8L * ((m + 63) >>> 6);
+    }
+}
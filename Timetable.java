@@ -0,0 +1,157 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A day's shuttle timetable, answered with the Connection Scan Algorithm.
+ *
+ * Every scheduled departure of a shuttle in one direction is a connection
+ * (from, to, departure, arrival). The connections are stored in flat int
+ * arrays sorted by departure time, so an earliest-arrival query is a single
+ * forward pass over a contiguous range of them. A terminal's waiting time
+ * is the minimum time a passenger needs there before boarding a departure.
+ */
+final class Timetable {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    /* Snapshot the timetable was built on */
+    final AirportGraph graph;
+    /* Airport schedule version the departures were read at */
+    final long scheduleVersion;
+    /* Connections, sorted by departure time */
+    private final int[] departStop;
+    private final int[] arriveStop;
+    private final int[] departTime;
+    private final int[] arriveTime;
+
+    /**
+     * Collects the departures of every shuttle in the snapshot into a sorted
+     * connection array.
+     *
+     * @param graph network snapshot
+     * @param scheduleVersion schedule version read before the departures
+     */
+    Timetable(AirportGraph graph, long scheduleVersion) {
+        this.graph = graph;
+        this.scheduleVersion = scheduleVersion;
+
+        int count = 0;
+        for (int u = 0; u < graph.size; u++)
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++)
+                count += departures(graph, u, e).length;
+
+        // Sort (departure, connection) pairs packed into longs
+        long[] keys = new long[count];
+        int[] from = new int[count];
+        int[] to = new int[count];
+        int[] depart = new int[count];
+        int[] arrive = new int[count];
+        int c = 0;
+        for (int u = 0; u < graph.size; u++) {
+            for (int e = graph.offsets[u]; e < graph.offsets[u + 1]; e++) {
+                for (int minute : departures(graph, u, e)) {
+                    from[c] = u;
+                    to[c] = graph.targets[e];
+                    depart[c] = minute;
+                    arrive[c] = minute + graph.times[e];
+                    keys[c] = ((long) minute << 32) | c;
+                    c++;
+                }
+            }
+        }
+        Arrays.sort(keys);
+
+        departStop = new int[count];
+        arriveStop = new int[count];
+        departTime = new int[count];
+        arriveTime = new int[count];
+        for (int i = 0; i < count; i++) {
+            int k = (int) keys[i];
+            departStop[i] = from[k];
+            arriveStop[i] = to[k];
+            departTime[i] = depart[k];
+            arriveTime[i] = arrive[k];
+        }
+    }
+
+    /**
+     * Returns the scheduled departures of edge slot e of terminal u.
+     */
+    private static int[] departures(AirportGraph graph, int u, int e) {
+        AirportBase.ShuttleBase shuttle = graph.shuttles[e];
+        if (!(shuttle instanceof Airport.Shuttle) || graph.targets[e] == u)
+            return new int[0];
+        return ((Airport.Shuttle) shuttle).departuresFrom(graph.terminals[u]);
+    }
+
+    /**
+     * Returns the number of connections in the timetable.
+     *
+     * @return number of connections
+     */
+    int size() {
+        return departTime.length;
+    }
+
+    /**
+     * Returns the journey from source to target that arrives earliest,
+     * leaving source no earlier than the given time.
+     *
+     * The scan starts at the first connection departing at or after start
+     * and stops once departures are later than the best arrival at target.
+     *
+     * @param source id of the starting terminal
+     * @param target id of the destination terminal
+     * @param start time the passenger is at source, in minutes after midnight
+     * @return Path whose time is the arrival minus start, or null if target
+     * cannot be reached today
+     */
+    AirportBase.Path earliestArrival(int source, int target, int start) {
+        // Arrival times live in the forward side, with the connection
+        // used to get there as the parent
+        Workspace.Side side = Workspace.get(graph.size).forward;
+        side.reach(source, start, -1);
+
+        // Connections play the part of arcs; none of the terminals is
+        // final before the scan ends, so none is counted as settled
+        int first = firstDepartureAtOrAfter(start);
+        int c = first;
+        for (; c < departTime.length; c++) {
+            if (departTime[c] >= side.distance(target))
+                break;
+            int u = departStop[c];
+            int ready = side.distance(u);
+            if (ready == INF || (long) ready + graph.waits[u] > departTime[c])
+                continue;
+            int v = arriveStop[c];
+            if (arriveTime[c] < side.distance(v))
+                side.reach(v, arriveTime[c], c);
+        }
+        side.relaxed(c - first);
+
+        if (!side.reached(target))
+            return null;
+
+        List<AirportBase.TerminalBase> route = new ArrayList<>();
+        for (int v = target; v != source; v = departStop[side.parent[v]])
+            route.add(graph.terminals[v]);
+        route.add(graph.terminals[source]);
+        Collections.reverse(route);
+        return new AirportBase.Path(route, side.dist[target] - start);
+    }
+
+    private int firstDepartureAtOrAfter(int minute) {
+        int low = 0;
+        int high = departTime.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departTime[mid] < minute)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
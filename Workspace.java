@@ -0,0 +1,174 @@
+import java.util.Arrays;
+
+/**
+ * Reusable scratch space for point-to-point searches, one per thread.
+ *
+ * Each search side keeps its per-terminal arrays between queries and marks
+ * the entries written by the current query with a generation number, so
+ * starting a new query costs one increment instead of clearing O(n)
+ * arrays. Once the arrays are large enough for the network, the search
+ * itself allocates nothing; only the returned Path is new.
+ *
+ * A search must finish with its workspace before anything else on the same
+ * thread asks for it, so searches never nest.
+ */
+final class Workspace {
+
+    private static final int INF = Integer.MAX_VALUE;
+    private static final ThreadLocal<Workspace> LOCAL =
+            ThreadLocal.withInitial(Workspace::new);
+
+    /* Search from the origin, and from the destination if bidirectional */
+    final Side forward = new Side();
+    final Side backward = new Side();
+    /* Visited, current and next frontier bitsets for FrontierBfs */
+    long[] visited = new long[0];
+    long[] frontierBits = new long[0];
+    long[] nextBits = new long[0];
+    /* Scratch stacks for unpacking shortcut edges */
+    final IntList chain = new IntList();
+    final IntList stack = new IntList();
+
+    private Workspace() {
+    }
+
+    /**
+     * Returns this thread's workspace without resetting it, for reading its
+     * counters.
+     *
+     * @return workspace of the calling thread
+     */
+    static Workspace current() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Copies the running totals of both sides into counts, in the order of
+     * the SearchStats counter indexes.
+     *
+     * @param counts array to fill
+     * @param offset index of counts at which to write the first counter
+     */
+    void readCounters(long[] counts, int offset) {
+        IndexedHeap f = forward.heap;
+        IndexedHeap b = backward.heap;
+        counts[offset + SearchStats.SETTLED] = forward.settles
+                + backward.settles;
+        counts[offset + SearchStats.RELAXED] = forward.relaxations
+                + backward.relaxations;
+        counts[offset + SearchStats.PUSHES] = f.pushes + b.pushes;
+        counts[offset + SearchStats.POLLS] = f.polls + b.polls;
+        counts[offset + SearchStats.DECREASES] = f.decreases + b.decreases;
+    }
+
+    /**
+     * Returns this thread's workspace, with both sides reset and sized for
+     * a network of n terminals.
+     *
+     * @param n number of terminals in the snapshot being searched
+     * @return workspace of the calling thread
+     */
+    static Workspace get(int n) {
+        Workspace w = LOCAL.get();
+        w.forward.reset(n);
+        w.backward.reset(n);
+        int words = (n + 63) >>> 6;
+        if (w.visited.length < words) {
+            w.visited = new long[words];
+            w.frontierBits = new long[words];
+            w.nextBits = new long[words];
+        }
+        w.chain.clear();
+        w.stack.clear();
+        return w;
+    }
+
+    /**
+     * Distances, predecessors and a heap for one direction of a search.
+     * Entries of dist and parent are only meaningful for terminals marked
+     * reached in the current generation.
+     */
+    static final class Side {
+
+        int[] dist = new int[0];
+        int[] parent = new int[0];
+        /* Queue for breadth-first searches */
+        int[] queue = new int[0];
+        IndexedHeap heap = new IndexedHeap(0);
+        /* Generation in which each terminal was last reached or settled */
+        private int[] reached = new int[0];
+        private int[] settled = new int[0];
+        private int generation;
+        /* Running totals of settled terminals and arcs, for SearchStats */
+        private long settles;
+        private long relaxations;
+
+        /**
+         * Starts a new generation, growing the arrays to n terminals if
+         * needed. Get resets both sides; a search that runs several times
+         * on one side resets it between runs.
+         *
+         * @param n number of terminals in the snapshot being searched
+         */
+        void reset(int n) {
+            if (dist.length < n) {
+                dist = new int[n];
+                parent = new int[n];
+                queue = new int[n];
+                reached = new int[n];
+                settled = new int[n];
+                IndexedHeap old = heap;
+                heap = new IndexedHeap(n);
+                heap.pushes = old.pushes;
+                heap.decreases = old.decreases;
+                heap.polls = old.polls;
+                generation = 0;
+            } else {
+                heap.clear();
+            }
+            if (++generation == INF) {
+                Arrays.fill(reached, 0);
+                Arrays.fill(settled, 0);
+                generation = 1;
+            }
+        }
+
+        boolean reached(int v) {
+            return reached[v] == generation;
+        }
+
+        /**
+         * Returns v's tentative distance, or Integer.MAX_VALUE if v has not
+         * been reached in this generation.
+         */
+        int distance(int v) {
+            return reached[v] == generation ? dist[v] : INF;
+        }
+
+        void reach(int v, int distance, int from) {
+            reached[v] = generation;
+            dist[v] = distance;
+            parent[v] = from;
+        }
+
+        boolean settled(int v) {
+            return settled[v] == generation;
+        }
+
+        void settle(int v) {
+            settled[v] = generation;
+            settles++;
+        }
+
+        /**
+         * Counts arcs examined from a settled terminal, whether or not they
+         * improved a distance. Searches call it once per terminal they
+         * expand.
+         *
+         * @param arcs number of arcs examined
+         */
+        void relaxed(int arcs) {
+            relaxations += arcs;
+        }
+    }
+}